@@ -0,0 +1,263 @@
+package auc;
+
+/**
+ * Accumulates examples one at a time and reports AUC-ROC and AUC-PR
+ * for everything added so far, without writing a list file.  New
+ * examples are buffered and only sorted and folded into running
+ * per-score sums of positive and negative weight when a snapshot is
+ * requested, so adding an example is cheap, repeated snapshots only
+ * sort what is new, and a snapshot sweeps the distinct scores instead
+ * of every example.  AUC-ROC is the same as Confusion.createConfusion
+ * gives on the examples, and AUC-PR is the interpolated area it gives
+ * unless the snapshot asks for the closed form of the -closed option,
+ * which needs no interpolated points.
+ */
+public class AUCAccumulator {
+	/**
+	 * Distinct scores folded in so far, ascending, only the first
+	 * groups entries are used
+	 */
+	private double[] scores = new double[16];
+
+	/**
+	 * Positive weight of each score
+	 */
+	private double[] posWeights = new double[16];
+
+	/**
+	 * Negative weight of each score
+	 */
+	private double[] negWeights = new double[16];
+
+	/**
+	 * Number of distinct scores
+	 */
+	private int groups = 0;
+
+	/**
+	 * Number of examples added
+	 */
+	private int count = 0;
+
+	/**
+	 * Examples added since the last snapshot, in order
+	 */
+	private ExampleList pending = new ExampleList();
+
+	/**
+	 * Last snapshot taken, or null if examples were added since
+	 */
+	private Snapshot last = null;
+
+	/**
+	 * Adds an example with weight 1.0
+	 * @param score probability of the example
+	 * @param label 1 for positive, 0 for negative
+	 */
+	public void add(double score, int label) {
+		add(score, label, 1.0);
+	}
+
+	/**
+	 * Adds an example
+	 * @param score probability of the example, must be finite
+	 * @param label 1 for positive, 0 for negative
+	 * @param weight weight of the example, cannot be negative
+	 */
+	public void add(double score, int label, double weight) {
+		if (Double.isNaN(score) || Double.isInfinite(score)) {
+			throw new IllegalArgumentException("score must be finite, not " + score);
+		}
+		if (label != 0 && label != 1) {
+			throw new IllegalArgumentException("label must be 0 or 1, not " + label);
+		}
+		if (weight < 0.0) {
+			throw new IllegalArgumentException("weight cannot be negative");
+		}
+		pending.add(score, label, weight);
+		count++;
+		last = null;
+	}
+
+	/**
+	 * Adds every example of other after the examples of this
+	 * accumulator.  other is not changed, and its scores are finite
+	 * as add checked them.
+	 * @param other accumulator to merge in
+	 */
+	public void merge(AUCAccumulator other) {
+		if (other.size() == 0) {
+			return;
+		}
+		for (int g = 0; g < other.groups; g++) {
+			pending.add(other.scores[g], 1, other.posWeights[g]);
+			pending.add(other.scores[g], 0, other.negWeights[g]);
+		}
+		pending.addAll(other.pending);
+		count += other.count;
+		last = null;
+	}
+
+	/**
+	 * Number of examples added
+	 * @return number of examples
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Areas under the curves for everything added so far
+	 * @return snapshot with AUC-ROC and AUC-PR for recall >= 0.0
+	 */
+	public Snapshot snapshot() {
+		return snapshot(0.0);
+	}
+
+	/**
+	 * Areas under the curves for everything added so far
+	 * @param minRecall the lower bound cutoff for recall in AUC-PR
+	 * @return snapshot with AUC-ROC and AUC-PR
+	 */
+	public Snapshot snapshot(double minRecall) {
+		return snapshot(minRecall, false);
+	}
+
+	/**
+	 * Areas under the curves for everything added so far
+	 * @param minRecall the lower bound cutoff for recall in AUC-PR
+	 * @param closedForm true to integrate AUC-PR in closed form, as
+	 *        the -closed option does, instead of over the interpolated
+	 *        points of Confusion.createConfusion
+	 * @return snapshot with AUC-ROC and AUC-PR
+	 */
+	public Snapshot snapshot(double minRecall, boolean closedForm) {
+		if (size() == 0) {
+			throw new IllegalStateException("Cannot calculate area with no examples");
+		}
+		if (last != null && last.minRecall == minRecall
+				&& last.closedForm == closedForm) {
+			return last;
+		}
+		if (pending.size() > 0) {
+			fold();
+		}
+
+		// one positive and one negative entry per score, already
+		// sorted, so these only sweep the scores
+		int n = 2 * groups;
+		double[] probs = new double[n];
+		byte[] classes = new byte[n];
+		double[] weights = new double[n];
+		for (int g = 0; g < groups; g++) {
+			probs[2*g] = scores[g];
+			classes[2*g] = 1;
+			weights[2*g] = posWeights[g];
+			probs[2*g+1] = scores[g];
+			weights[2*g+1] = negWeights[g];
+		}
+		ExampleList sums = new ExampleList(probs, classes, weights, n, true);
+		Confusion points = Confusion.createConfusion(sums, !closedForm, true);
+		last = new Snapshot(size(), minRecall, closedForm,
+				Confusion.calculateAUCROC(sums), points.areaPR(minRecall, closedForm));
+		return last;
+	}
+
+	/**
+	 * Sorts the pending examples and merges them into the per-score
+	 * sums in one pass
+	 */
+	private void fold() {
+		pending.sort();
+		int cap = groups + pending.size();
+		double[] s = new double[cap];
+		double[] p = new double[cap];
+		double[] ng = new double[cap];
+		int m = 0;
+		int g = 0;
+		int i = 0;
+		while (g < groups || i < pending.size()) {
+			double score = (i == pending.size()
+					|| (g < groups && scores[g] <= pending.getProb(i)))
+				? scores[g] : pending.getProb(i);
+			s[m] = score;
+			if (g < groups && scores[g] == score) {
+				p[m] = posWeights[g];
+				ng[m] = negWeights[g];
+				g++;
+			}
+			for (; i < pending.size() && pending.getProb(i) == score; i++) {
+				if (pending.getClassification(i) == 1) {
+					p[m] += pending.getWeight(i);
+				} else {
+					ng[m] += pending.getWeight(i);
+				}
+			}
+			m++;
+		}
+		scores = s;
+		posWeights = p;
+		negWeights = ng;
+		groups = m;
+		pending = new ExampleList();
+	}
+
+	/**
+	 * Areas under the curves at the time of a snapshot
+	 */
+	public static class Snapshot {
+		private final int count;
+		private final double minRecall;
+		private final boolean closedForm;
+		private final double aucROC;
+		private final double aucPR;
+
+		Snapshot(int count, double minRecall, boolean closedForm,
+				double aucROC, double aucPR) {
+			this.count = count;
+			this.minRecall = minRecall;
+			this.closedForm = closedForm;
+			this.aucROC = aucROC;
+			this.aucPR = aucPR;
+		}
+
+		/**
+		 * @return number of examples included
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return lower bound cutoff for recall used for AUC-PR
+		 */
+		public double getMinRecall() {
+			return minRecall;
+		}
+
+		/**
+		 * @return true if AUC-PR was integrated in closed form
+		 */
+		public boolean isClosedForm() {
+			return closedForm;
+		}
+
+		/**
+		 * @return area under the ROC curve
+		 */
+		public double getAUCROC() {
+			return aucROC;
+		}
+
+		/**
+		 * @return area under the precision-recall curve
+		 */
+		public double getAUCPR() {
+			return aucPR;
+		}
+
+		public String toString() {
+			return "AUC-ROC: " + aucROC + ", AUC-PR: " + aucPR;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package auc;
 
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 
 
@@ -49,11 +50,75 @@ public class AUCCalculator {
      * Prefix for output files (.pr, .roc, and .spr) or null for no output files
      */
     private static String outputPrefix = null;
-    
+
+    /**
+     * Integrate the PR curve in closed form instead of over
+     * interpolated points.  Off by default so AUC-PR matches the
+     * trapezoid area of the original program exactly.
+     */
+    private static boolean closedForm = false;
+
+    /**
+     * Number of threads to use, more than 1 parses list files in
+     * parallel chunks, or 0 if not given
+     */
+    private static int threads = 0;
+
+    /**
+     * Number of histogram bins for approximate AUC of list files, or 0
+     * to use every example
+     */
+    private static int bins = 0;
+
+    /**
+     * Number of bootstrap resamples of list files for confidence
+     * intervals, or 0 for none
+     */
+    private static int replicates = 0;
+
+    /**
+     * Seed for drawing bootstrap resamples
+     */
+    private static long seed = 1;
+
+    /**
+     * Confidence level of bootstrap intervals
+     */
+    private static final double LEVEL = 0.95;
+
+    /**
+     * Compare the AUC-ROC of list files scoring the same examples with
+     * DeLong's test instead of averaging them
+     */
+    private static boolean delong = false;
+
     /**
-     * Turn debugging on or off
+     * Memory budget in bytes for sorting list files out of core, or 0
+     * to sort them in memory
      */
-    public static boolean DEBUG = true;
+    private static long memory = 0;
+
+    /**
+     * Format of the phase statistics printed to stderr, table or
+     * json, or null for none
+     */
+    private static String stats = null;
+
+    /**
+     * Most points of the written .pr and .roc curves, or 0 for all
+     */
+    private static int maxPoints = 0;
+
+    /**
+     * Largest vertical error of the written .pr and .roc curves, or 0
+     * for none
+     */
+    private static double maxError = 0.0;
+
+    /**
+     * Number of samples of the .spr curve
+     */
+    private static int standard = 100;
        
     
     /**
@@ -61,6 +126,17 @@ public class AUCCalculator {
      * @param args command line arguments
      */
     public static void main(String[] args) {
+	run(args);
+	if (Stats.isEnabled()) {
+	    Stats.print(System.err, stats.equals("json"));
+	}
+    }
+
+    /**
+     * Evaluates the files named by the arguments
+     * @param args command line arguments
+     */
+    private static void run(String[] args) {
 	if (!readArgs(args)) {
 	    showUsage();
 	    return;
@@ -72,12 +148,71 @@ public class AUCCalculator {
 	    return;	    
 	}
 	
+	if (delong) {
+	    if (!fileType.equalsIgnoreCase("list")) {
+		System.out.println("DeLong comparison only supported with list filetypes");
+		showUsage();
+		return;
+	    }
+	    compareFiles();
+	    return;
+	}
+
+	if (fileType.equalsIgnoreCase("multi")) {
+	    if (files.size()!=1) {
+		System.out.println("Multi-score files are evaluated one at a time");
+		showUsage();
+		return;
+	    }
+	    evaluateModels(files.get(0));
+	    return;
+	}
+
+	if (fileType.equalsIgnoreCase("group")) {
+	    if (files.size()!=1) {
+		System.out.println("Grouped files are evaluated one at a time");
+		showUsage();
+		return;
+	    }
+	    evaluateGroups(files.get(0));
+	    return;
+	}
+
 	if (files.size()==1) {
 	    // single file
 	    String fileName = files.get(0);
 	    Confusion points;
-	    if (fileType.equalsIgnoreCase("list")){
-		points = ReadList.readFile(fileName, fileType);
+	    // interpolated points only needed for output files or the
+	    // trapezoid AUC-PR
+	    boolean interpolate = outputPrefix!=null || !closedForm;
+	    ScoreHistogram histogram = null;
+	    Bootstrap bootstrap = null;
+	    if (fileType.equalsIgnoreCase("list") && bins>0){
+		histogram = ReadList.readHistogram(fileName, bins);
+		// AUC-PR comes from the histogram in closed form, points are
+		// only interpolated for output files
+		points = histogram.createConfusion(outputPrefix!=null);
+	    }
+	    else if (fileType.equalsIgnoreCase("list") && replicates>0){
+		// keep the sorted examples to resample them
+		ExampleList examples = ReadList.readList(fileName, parseThreads());
+		points = Confusion.createConfusion(examples, interpolate);
+		bootstrap = new Bootstrap(examples, minRecall, closedForm);
+		bootstrap.run(replicates, seed, workers());
+	    }
+	    else if (fileType.equalsIgnoreCase("list") && memory>0 && outputPrefix==null){
+		// no points needed, so the areas come straight from the
+		// merged runs and memory stays within the budget
+		double[] areas = ReadList.readLargeAreas(fileName, minRecall, memory, null);
+		System.out.println("Area Under the Curve for Precision - Recall is " + areas[0]);
+		System.out.println("Area Under the Curve for ROC is " + areas[1]);
+		return;
+	    }
+	    else if (fileType.equalsIgnoreCase("list") && memory>0){
+		points = ReadList.readLargeFile(fileName, interpolate, memory, null);
+	    }
+	    else if (fileType.equalsIgnoreCase("list")){
+		points = ReadList.readFile(fileName, fileType, interpolate, parseThreads());
 	    }
 	    else {
 		if (posCount<=0.0 || negCount<=0.0) {
@@ -85,18 +220,27 @@ public class AUCCalculator {
 		    showUsage();
 		    return;
 		}		    
-		points = readFile(fileName, fileType, posCount, negCount);
+		points = readFile(fileName, fileType, posCount, negCount, interpolate);
 	    }
+	    Curve prCurve = null, rocCurve = null;
 	    if (outputPrefix!=null) {
-	    points.writeOriginalPRFile(outputPrefix + ".opr");
-		points.writePRFile(outputPrefix + ".pr");
-		points.writeStandardPRFile(outputPrefix + ".spr");
-		points.writeROCFile(outputPrefix + ".roc");
+		// the curves of the files also give the areas
+		prCurve = points.createPRCurve();
+		rocCurve = points.createROCCurve();
+		points.writeFiles(outputPrefix, prCurve, rocCurve, standard, maxPoints, maxError);
 	    }
-	    double aucPR = points.calculateAUCPR(minRecall);
-	    double aucROC = points.calculateAUCROC();
+	    double aucPR = histogram!=null ? histogram.getAUCPR(minRecall) :
+		prCurve!=null && !closedForm ? prCurve.getArea(minRecall) :
+		calculateAUCPR(points);
+	    double aucROC = rocCurve!=null ? rocCurve.getArea() : points.calculateAUCROC();
 	    System.out.println("Area Under the Curve for Precision - Recall is " + aucPR);
 	    System.out.println("Area Under the Curve for ROC is " + aucROC);
+	    if (histogram!=null) {
+		showErrorBounds(histogram);
+	    }
+	    if (bootstrap!=null) {
+		showIntervals(bootstrap);
+	    }
 	}
 	else {
 	    // multiple files
@@ -111,17 +255,47 @@ public class AUCCalculator {
 	    
 	    ArrayList<Curve> prCurves = new ArrayList<Curve>(),
 		rocCurves = new ArrayList<Curve>();
-	    
-	    for (String fileName : files) {
-		System.out.println("Processing '" + fileName + "'");
-		Confusion points = ReadList.readFile(fileName,fileType);
-		double aucPR = points.calculateAUCPR(minRecall);
-		double aucROC = points.calculateAUCROC();
-		System.out.println("Area Under the Curve for Precision - Recall is " + aucPR);
-		System.out.println("Area Under the Curve for ROC is " + aucROC);
+
+	    // process the files concurrently, but report them in order
+	    int workers = Math.min(files.size(), workers());
+	    ExecutorService pool = Executors.newFixedThreadPool(workers);
+	    ArrayList<Future<FileResult>> results = new ArrayList<Future<FileResult>>();
+	    for (final String fileName : files) {
+		results.add(pool.submit(new Callable<FileResult>() {
+			public FileResult call() {
+			    return processFile(fileName);
+			}
+		    }));
+	    }
+	    pool.shutdown();
+
+	    for (int i=0;i<files.size();i++) {
+		FileResult result = null;
+		try {
+		    result = results.get(i).get();
+		}
+		catch (InterruptedException eInt) {
+		    System.err.println("ERROR: Interrupted processing " + files.get(i) + " - exiting...");
+		    System.exit(-1);
+		}
+		catch (ExecutionException eExec) {
+		    System.err.println("ERROR: Failed processing " + files.get(i) + " - exiting...");
+		    eExec.getCause().printStackTrace();
+		    System.exit(-1);
+		}
+		System.out.println("Processing '" + files.get(i) + "'");
+		System.out.print(result.log);
+		System.out.println("Area Under the Curve for Precision - Recall is " + result.aucPR);
+		System.out.println("Area Under the Curve for ROC is " + result.aucROC);
+		if (result.histogram!=null) {
+		    showErrorBounds(result.histogram);
+		}
+		if (result.bootstrap!=null) {
+		    showIntervals(result.bootstrap);
+		}
 		
-		prCurves.add(points.createPRCurve());
-		rocCurves.add(points.createROCCurve());
+		prCurves.add(result.prCurve);
+		rocCurves.add(result.rocCurve);
 	    }
 
 	   
@@ -129,8 +303,8 @@ public class AUCCalculator {
 	    Curve rocCurve = Curve.createVerticalAverage(rocCurves);
 	    System.out.println("\nVertically averaged totals:");
 	    if (outputPrefix!=null) {
-		prCurve.write(outputPrefix + ".pr");
-		rocCurve.write(outputPrefix + ".roc");
+		prCurve.simplify("PR", maxPoints, maxError).write(outputPrefix + ".pr");
+		rocCurve.simplify("ROC", maxPoints, maxError).write(outputPrefix + ".roc");
 	    }
 	    double aucPR = prCurve.getArea(minRecall);
 	    double aucROC = rocCurve.getArea();
@@ -141,6 +315,323 @@ public class AUCCalculator {
     }
     
 
+    /**
+     * Calculates AUC-PR using the integration chosen on the command line
+     * @param points Confusion to calculate area for
+     * @return area under the PR curve for recall>=minRecall
+     */
+    private static double calculateAUCPR(Confusion points) {
+	if (closedForm) {
+	    return points.calculateAUCPRClosedForm(minRecall);
+	}
+	return points.calculateAUCPR(minRecall);
+    }
+
+
+    /**
+     * Number of threads parsing a single list file, 1 unless -threads
+     * is given
+     * @return number of parsing threads
+     */
+    private static int parseThreads() {
+	return threads>0 ? threads : 1;
+    }
+
+    /**
+     * Number of threads working on separate files, models, groups or
+     * resamples, all cores unless -threads is given
+     * @return number of worker threads
+     */
+    private static int workers() {
+	return threads>0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    /**
+     * Areas and curves calculated for one of several files
+     */
+    private static class FileResult {
+	String log;
+	double aucPR, aucROC;
+	Curve prCurve, rocCurve;
+	ScoreHistogram histogram;
+	Bootstrap bootstrap;
+    }
+
+    /**
+     * Reads a list file and calculates its areas and curves, for
+     * vertical averaging of several files.  Parses with a single
+     * thread as files are processed in parallel, and captures the
+     * diagnostics so they are printed with the result of the file.
+     * @param fileName file to read
+     * @return areas and curves of the file
+     */
+    private static FileResult processFile(String fileName) {
+	Log.capture();
+	FileResult result;
+	String log;
+	try {
+	    result = calculateFile(fileName);
+	} finally {
+	    log = Log.release();
+	}
+	result.log = log;
+	return result;
+    }
+
+    /**
+     * Reads a list file and calculates its areas and curves
+     * @param fileName file to read
+     * @return areas and curves of the file
+     */
+    private static FileResult calculateFile(String fileName) {
+	FileResult result = new FileResult();
+	Confusion points;
+	if (bins>0) {
+	    result.histogram = ReadList.readHistogram(fileName, bins);
+	    // interpolated for the averaged curves
+	    points = result.histogram.createConfusion(true);
+	}
+	else if (replicates>0) {
+	    ExampleList examples = ReadList.readList(fileName, 1);
+	    points = Confusion.createConfusion(examples, true);
+	    // files are already processed in parallel
+	    result.bootstrap = new Bootstrap(examples, minRecall, closedForm);
+	    result.bootstrap.run(replicates, seed, 1);
+	}
+	else if (memory>0) {
+	    points = ReadList.readLargeFile(fileName, true, memory, null);
+	}
+	else {
+	    points = ReadList.readFile(fileName,fileType,true,1);
+	}
+	// the curves for averaging also give the areas
+	result.prCurve = points.createPRCurve();
+	result.rocCurve = points.createROCCurve();
+	result.aucPR = result.histogram!=null ? result.histogram.getAUCPR(minRecall) :
+	    closedForm ? calculateAUCPR(points) : result.prCurve.getArea(minRecall);
+	result.aucROC = result.rocCurve.getArea();
+	return result;
+    }
+
+
+    /**
+     * Prints how far the areas from a histogram can be from the exact
+     * areas
+     * @param histogram histogram the areas were calculated from
+     */
+    private static void showErrorBounds(ScoreHistogram histogram) {
+	System.out.println("Approximation error for Precision - Recall is at most " + histogram.getAUCPRError(minRecall));
+	System.out.println("Approximation error for ROC is at most " + histogram.getAUCROCError());
+    }
+
+
+    /**
+     * Reads a multi-score file once and calculates the areas of every
+     * model in parallel, printing a row for each model and writing its
+     * .pr and .roc files if there is an output prefix
+     * @param fileName file to read
+     */
+    private static void evaluateModels(String fileName) {
+	ScoreTable table = null;
+	try {
+	    table = ScoreTable.read(fileName);
+	} catch (FileNotFoundException fnfe) {
+	    // User didn't type in an existing fileName
+	    System.err.println("ERROR: File " + fileName + " not found - exiting...");
+	    System.exit(-1);
+	} catch (IOException ioe) {
+	    System.err.println("ERROR: IO Exception in file " + fileName + " - exiting...");
+	    System.exit(-1);
+	} catch (IllegalArgumentException iae) {
+	    System.err.println("ERROR: " + iae.getMessage() + " in file " + fileName + " - exiting...");
+	    System.exit(-1);
+	}
+
+	final ScoreTable models = table;
+	final boolean interpolate = outputPrefix!=null || !closedForm;
+	final Confusion[] points = new Confusion[models.getModels()];
+	final double[] aucPR = new double[points.length];
+	final double[] aucROC = new double[points.length];
+	int workers = Math.max(1, Math.min(points.length, workers()));
+	ExecutorService pool = Executors.newFixedThreadPool(workers);
+	ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+	for (int k=0;k<points.length;k++) {
+	    final int model = k;
+	    results.add(pool.submit(new Runnable() {
+		    public void run() {
+			ExampleList list = models.getModel(model);
+			if (!hasBothClasses(list)) {
+			    // no curve, but the other models still get a row
+			    aucPR[model] = Double.NaN;
+			    aucROC[model] = Double.NaN;
+			    return;
+			}
+			Confusion c = Confusion.createConfusion(list, interpolate, true);
+			aucPR[model] = c.areaPR(minRecall, closedForm);
+			aucROC[model] = Confusion.calculateAUCROC(list);
+			if (outputPrefix!=null) {
+			    points[model] = c;
+			}
+		    }
+		}));
+	}
+	pool.shutdown();
+	for (int k=0;k<points.length;k++) {
+	    try {
+		results.get(k).get();
+	    }
+	    catch (InterruptedException eInt) {
+		System.err.println("ERROR: Interrupted processing " + fileName + " - exiting...");
+		System.exit(-1);
+	    }
+	    catch (ExecutionException eExec) {
+		System.err.println("ERROR: Failed processing model " + models.getName(k) + " - exiting...");
+		eExec.getCause().printStackTrace();
+		System.exit(-1);
+	    }
+	}
+
+	System.out.println("Model\tAUC-PR\tAUC-ROC");
+	for (int k=0;k<points.length;k++) {
+	    System.out.println(models.getName(k) + "\t" + aucPR[k] + "\t" + aucROC[k]);
+	}
+	if (outputPrefix!=null) {
+	    for (int k=0;k<points.length;k++) {
+		if (points[k]==null) {
+		    System.err.println("ERROR: Model " + models.getName(k) + " needs positive and negative examples - no files written");
+		    continue;
+		}
+		// header names could hold path separators
+		points[k].writePRFile(outputPrefix + "." + models.getFileName(k) + ".pr");
+		points[k].writeROCFile(outputPrefix + "." + models.getFileName(k) + ".roc");
+	    }
+	}
+    }
+
+
+    /**
+     * Checks that a list has positive and negative weight, as needed
+     * for a Confusion
+     * @param list examples to check
+     * @return true if both classes have weight
+     */
+    private static boolean hasBothClasses(ExampleList list) {
+	double pos = 0, neg = 0;
+	for (int i=0;i<list.size();i++) {
+	    if (list.getClassification(i)==1) {
+		pos += list.getWeight(i);
+	    }
+	    else {
+		neg += list.getWeight(i);
+	    }
+	}
+	return pos>0 && neg>0;
+    }
+
+
+    /**
+     * Reads a grouped list file once, partitioning the examples by key,
+     * and calculates the areas of every group in parallel, printing a
+     * row for each group in order of first appearance
+     * @param fileName file to read
+     */
+    private static void evaluateGroups(String fileName) {
+	LinkedHashMap<String, ExampleList> groups = ReadList.readGroups(fileName);
+	final String[] keys = groups.keySet().toArray(new String[groups.size()]);
+	final ExampleList[] lists = groups.values().toArray(new ExampleList[groups.size()]);
+	final double[] aucPR = new double[keys.length];
+	final double[] aucROC = new double[keys.length];
+	int workers = Math.max(1, Math.min(keys.length, workers()));
+	ExecutorService pool = Executors.newFixedThreadPool(workers);
+	ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+	for (int g=0;g<keys.length;g++) {
+	    final int group = g;
+	    results.add(pool.submit(new Runnable() {
+		    public void run() {
+			ExampleList list = lists[group];
+			if (!hasBothClasses(list)) {
+			    // one segment cannot stop the table
+			    aucPR[group] = Double.NaN;
+			    aucROC[group] = Double.NaN;
+			    return;
+			}
+			Confusion c = Confusion.createConfusion(list, !closedForm, true);
+			aucPR[group] = c.areaPR(minRecall, closedForm);
+			aucROC[group] = Confusion.calculateAUCROC(list);
+		    }
+		}));
+	}
+	pool.shutdown();
+	for (int g=0;g<keys.length;g++) {
+	    try {
+		results.get(g).get();
+	    }
+	    catch (InterruptedException eInt) {
+		System.err.println("ERROR: Interrupted processing " + fileName + " - exiting...");
+		System.exit(-1);
+	    }
+	    catch (ExecutionException eExec) {
+		System.err.println("ERROR: Failed processing group " + keys[g] + " - exiting...");
+		eExec.getCause().printStackTrace();
+		System.exit(-1);
+	    }
+	}
+
+	System.out.println("Group\tExamples\tAUC-PR\tAUC-ROC");
+	for (int g=0;g<keys.length;g++) {
+	    System.out.println(keys[g] + "\t" + lists[g].size() + "\t" + aucPR[g] + "\t" + aucROC[g]);
+	}
+    }
+
+
+    /**
+     * Reads list files scoring the same examples in the same order and
+     * prints the DeLong variance of each AUC-ROC and the paired test
+     * of every pair of files
+     */
+    private static void compareFiles() {
+	ExampleList[] models = new ExampleList[files.size()];
+	for (int i=0;i<files.size();i++) {
+	    models[i] = ReadList.readList(files.get(i), parseThreads());
+	}
+	DeLong test = null;
+	try {
+	    test = new DeLong(models);
+	}
+	catch (IllegalArgumentException iae) {
+	    System.err.println("ERROR: " + iae.getMessage() + " - exiting...");
+	    System.exit(-1);
+	}
+	for (int i=0;i<files.size();i++) {
+	    System.out.println("Processing '" + files.get(i) + "'");
+	    // unweighted with exact ties, so it can differ from the
+	    // area of the ROC curve printed without -delong
+	    System.out.println("Mann-Whitney Area Under the Curve for ROC is " + test.getAUC(i));
+	    System.out.println("DeLong variance for ROC is " + test.getVariance(i));
+	}
+	for (int i=0;i<files.size();i++) {
+	    for (int j=i+1;j<files.size();j++) {
+		System.out.println("\nDeLong test of '" + files.get(i) + "' and '" + files.get(j) + "':");
+		System.out.println("Covariance for ROC is " + test.getCovariance(i,j));
+		System.out.println("z is " + test.getZ(i,j) + ", p-value is " + test.getPValue(i,j));
+	    }
+	}
+    }
+
+
+    /**
+     * Prints the bootstrap percentile intervals of the areas
+     * @param bootstrap resampled areas
+     */
+    private static void showIntervals(Bootstrap bootstrap) {
+	double[] pr = bootstrap.getAUCPRInterval(LEVEL);
+	double[] roc = bootstrap.getAUCROCInterval(LEVEL);
+	System.out.println("Bootstrap " + Math.round(100*LEVEL) + "% interval for Precision - Recall is " + pr[0] + " to " + pr[1]);
+	System.out.println("Bootstrap " + Math.round(100*LEVEL) + "% interval for ROC is " + roc[0] + " to " + roc[1]);
+    }
+
+
     /**
      * Parses the arguments and populates local static variables
      * @param args command line arguments
@@ -161,11 +652,13 @@ public class AUCCalculator {
 		    String temp = args[index].toLowerCase();
 		    if (temp.equals("list") ||
 			temp.equals("roc") ||
-			temp.equals("pr")) {
+			temp.equals("pr") ||
+			temp.equals("multi") ||
+			temp.equals("group")) {
 			fileType = temp;
 		    }
 		    else {
-			System.out.println("Option " + cur + " requires file type of list, pr, or roc");
+			System.out.println("Option " + cur + " requires file type of list, pr, roc, multi, or group");
 			return false;
 		    }
 		}
@@ -188,6 +681,75 @@ public class AUCCalculator {
 		    index++;
 		    outputPrefix = args[index];
 		}
+		else if (cur.equals("-closed")) {
+		    closedForm = true;
+		}
+		else if (cur.equals("-bins")) {
+		    index++;
+		    bins = Integer.parseInt(args[index]);
+		}
+		else if (cur.equals("-bootstrap")) {
+		    index++;
+		    replicates = Integer.parseInt(args[index]);
+		}
+		else if (cur.equals("-memory")) {
+		    index++;
+		    memory = (long)(Double.parseDouble(args[index]) * (1 << 20));
+		}
+		else if (cur.equals("-simplify")) {
+		    index++;
+		    // a count of points, or a fraction for the error
+		    if (args[index].matches("[0-9]+")) {
+			maxPoints = Integer.parseInt(args[index]);
+			if (maxPoints<2) {
+			    System.out.println("Option " + cur + " requires at least 2 points");
+			    return false;
+			}
+		    }
+		    else {
+			maxError = Double.parseDouble(args[index]);
+		    }
+		}
+		else if (cur.equals("-spr")) {
+		    index++;
+		    standard = Integer.parseInt(args[index]);
+		    if (standard<1) {
+			System.out.println("Option " + cur + " requires a positive number of samples");
+			return false;
+		    }
+		}
+		else if (cur.equals("-log")) {
+		    index++;
+		    int level = Log.parseLevel(args[index]);
+		    if (level<0) {
+			System.out.println("Option " + cur + " requires level of off, info, debug, or trace");
+			return false;
+		    }
+		    Log.setLevel(level);
+		}
+		else if (cur.equals("-stats")) {
+		    index++;
+		    stats = args[index].toLowerCase();
+		    if (!stats.equals("table") && !stats.equals("json")) {
+			System.out.println("Option " + cur + " requires format of table or json");
+			return false;
+		    }
+		    Stats.setEnabled(true);
+		}
+		else if (cur.equals("-delong")) {
+		    delong = true;
+		}
+		else if (cur.equals("-seed")) {
+		    index++;
+		    seed = Long.parseLong(args[index]);
+		}
+		else if (cur.equals("-threads")) {
+		    index++;
+		    threads = Integer.parseInt(args[index]);
+		    if (threads<1) {
+			threads = Runtime.getRuntime().availableProcessors();
+		    }
+		}
 		else {
 		    // a file, we assume
 		    files.add(args[index]);
@@ -196,6 +758,11 @@ public class AUCCalculator {
 	    }
 	}
 	catch (NumberFormatException nfe) {
+	    if (cur.equals("-threads") || cur.equals("-bins") || cur.equals("-bootstrap") ||
+		cur.equals("-spr") || cur.equals("-seed")) {
+		System.out.println("Option " + cur + " requires an integer argument");
+		return false;
+	    }
 	    System.out.println("Option " + cur + " requires a double argument");
 	    return false;
 	}
@@ -211,8 +778,27 @@ public class AUCCalculator {
      */
     public static void showUsage() {
 	System.out.println("Usage:");
-	System.out.println("java auc [-t FILETYPE] [-p POSCOUNT] [-n NEGCOUNT] [-r MINRECALL] [-o OUTPUTPREFIX] FILES");
-	System.out.println("FILETYPE - list, pr, roc");
+	System.out.println("java auc [-t FILETYPE] [-p POSCOUNT] [-n NEGCOUNT] [-r MINRECALL] [-o OUTPUTPREFIX] [-closed] [-threads THREADS] [-bins BINS] [-bootstrap N] [-seed SEED] [-delong] [-memory MB] [-stats FORMAT] [-log LEVEL] [-simplify K|ERROR] [-spr SAMPLES] FILES");
+	System.out.println("FILETYPE - list, pr, roc, multi, group");
+	System.out.println("-closed - integrate AUC-PR in closed form between points, only interpolating points when writing output files");
+	System.out.println("          without -closed every positive is interpolated, so AUC-PR is the trapezoid area of the original program, bit for bit");
+	System.out.println("          (the closed form differs slightly, 0.893404 instead of 0.893487 for test/test.list)");
+	System.out.println("BINS - approximate list files with a histogram of BINS equal width probability bins over [0,1] and report error bounds, using constant memory");
+	System.out.println("       AUC-PR of the histogram is always integrated in closed form");
+	System.out.println("N - report 95% percentile intervals of both areas from N bootstrap resamples of list files without -bins, calculated on all cores");
+	System.out.println("SEED - seed for drawing bootstrap resamples, the same seed gives the same intervals (default 1)");
+	System.out.println("-delong - compare the AUC-ROC of list FILES scoring the same examples in the same order with DeLong's paired test, ignoring weights");
+	System.out.println("          the AUC-ROC printed is the Mann-Whitney statistic, with exact ties counted as half");
+	System.out.println("MB - sort list files larger than memory in runs of at most MB megabytes, spilled to java.io.tmpdir and merged (per file with multiple FILES)");
+	System.out.println("     a single FILE without OUTPUTPREFIX gets its areas straight from the merge, with AUC-PR in closed form, so memory stays within MB");
+	System.out.println("     with OUTPUTPREFIX or multiple FILES the curves need a point per distinct probability (and per positive unless -closed),");
+	System.out.println("     so -memory does not bound memory for continuous probabilities");
+	System.out.println("FORMAT - print the wall time, allocated bytes and item counts of each phase to stderr as a table or json");
+	System.out.println("K|ERROR - write .pr and .roc curves of at most K points, or within ERROR (such as 0.001) vertically of every point, and print the change in area");
+	System.out.println("SAMPLES - number of equally spaced recalls sampled for the .spr curve (default 100)");
+	System.out.println("LEVEL - diagnostics printed: off, info for files written, debug for each step, trace for every line of pr and roc files, as older versions printed (default info)");
+	System.out.println("THREADS - number of threads, more than 1 memory maps list files and parses them in parallel chunks, 0 uses all cores (default 1)");
+	System.out.println("          with multiple FILES, the number of files processed at once, 1 processes them one at a time (default all cores)");
 
 	System.out.println("\nFILETYPE Details:");
 	System.out.println(" roc:");
@@ -224,6 +810,20 @@ public class AUCCalculator {
 	System.out.println("  where prob is probability of positive, outcome is the true classification, and weight is an optional weight for the example, defaults to 1.0");
 	System.out.println("  outcome can be 0 or false for negative outcomes");
 	System.out.println("   and 1 or true for positive outcomes");
+	System.out.println("  list files can also be binary files written by java auc.BinaryList [-sorted] LISTFILE BINFILE");
+	System.out.println("\nFILES can be gzip compressed, and - reads standard input");
+	System.out.println(" multi:");
+	System.out.println("  outcome score1 score2 ... scoreK");
+	System.out.println("  where each score is the probability of positive from one of K models, evaluated in parallel with one row per model");
+	System.out.println("  an optional first line such as 'label name1 ... nameK' names the models, otherwise they are numbered from 1");
+	System.out.println("  with OUTPUTPREFIX, writes OUTPUTPREFIX.MODEL.pr and OUTPUTPREFIX.MODEL.roc for each model");
+	System.out.println("  where MODEL is the column number for names with characters other than letters, digits and . _ + -");
+	System.out.println("  models without both positive and negative examples get a row of NaN");
+	System.out.println(" group:");
+	System.out.println("  key prob outcome [weight]");
+	System.out.println("  where key names the group of the example, such as a country or device, and the rest is as in list files");
+	System.out.println("  the file is read once and each group is evaluated in parallel, with one row per group");
+	System.out.println("  groups without both positive and negative examples get a row of NaN");
     }
 
     /**
@@ -236,26 +836,41 @@ public class AUCCalculator {
      */
     public static Confusion readFile(String fileName, String fileType,
 			             double totPos, double totNeg) {
-	if (DEBUG) {
-	    System.out.println("--- Reading in " + fileType +  " File: " + fileName + " ---");
+	return readFile(fileName, fileType, totPos, totNeg, true);
+    }
+
+    /**
+     * Read in file containing data points
+     * @param fileName file to read
+     * @param fileType type of file, PR or ROC
+     * @param totPos total number of positive examples
+     * @param totNeg total number of negative examples
+     * @param interpolate true to add interpolated points
+     * @return Confusion object
+     */
+    public static Confusion readFile(String fileName, String fileType,
+			             double totPos, double totNeg,
+				     boolean interpolate) {
+	if (Log.isDebug()) {
+	    Log.debug("--- Reading in " + fileType +  " File: " + fileName + " ---");
 	}
 
+	Stats.Phase phase = Stats.begin("readFile");
 	Confusion points = new Confusion(totPos, totNeg);
 
 	BufferedReader fin = null;
 	try {
-	    fin = new BufferedReader(new FileReader(new File(fileName)));
+	    // may be compressed or standard input
+	    fin = new BufferedReader(new InputStreamReader(ReadList.open(fileName)));
 
             if (!(fileType.equals("pr") || fileType.equals("roc"))) {
            	throw new NoSuchElementException();
             }
 
-	    while (fin.ready()) {
+	    String line;
+	    while ((line = fin.readLine()) != null) {
 		
-		String line = fin.readLine();
-		if (DEBUG) { 
-		    System.out.println(line);
-		}
+		Log.trace(line);
 
 		// tokenize the line by tab, space or comma
 		StringTokenizer strtok = new StringTokenizer(line, "\t ,");
@@ -264,8 +879,8 @@ public class AUCCalculator {
 		try {
 		    double dp1 = Double.parseDouble(strtok.nextToken());
 		    double dp2 = Double.parseDouble(strtok.nextToken());
-		    if (DEBUG) { 
-			System.out.println(dp1 + "\t" + dp2);
+		    if (Log.isTrace()) { 
+			Log.trace(dp1 + "\t" + dp2);
 		    }
 
 		    if (fileType.equals("pr")) {
@@ -273,9 +888,7 @@ public class AUCCalculator {
 		    } else {
 			points.addROCPoint(dp1, dp2);
                     }
-		    if (DEBUG) { 
-			System.out.println("End of Line");
-		    }
+		    Log.trace("End of Line");
 
 		} catch (NumberFormatException nfe) {
 		    // Something was not a double as expceted. Ignore.
@@ -299,8 +912,14 @@ public class AUCCalculator {
 	    System.exit(-1);
 	}
 
-	points.sort();
-	points.interpolate();
+	phase.end(points.size());
+
+	if (interpolate) {
+	    points.sortAndInterpolate();
+	}
+	else {
+	    points.sort();
+	}
 	return points;
     }
 
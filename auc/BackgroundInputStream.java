@@ -0,0 +1,160 @@
+package auc;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+
+/**
+ * Reads another stream on its own thread, handing chunks of bytes to
+ * the reading thread through a small queue.  Wrapping a decompressing
+ * stream lets decompression run ahead while the reader parses what
+ * was already decompressed.
+ */
+public class BackgroundInputStream extends InputStream {
+	/**
+	 * Most bytes read from the source at once
+	 */
+	private static final int CHUNK = 1 << 16;
+
+	/**
+	 * Number of chunks that can be waiting for the reader
+	 */
+	private static final int DEPTH = 16;
+
+	/**
+	 * Marks the end of the source
+	 */
+	private static final byte[] END = new byte[0];
+
+	/**
+	 * Chunks read from the source, in order
+	 */
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(DEPTH);
+
+	/**
+	 * Thread reading the source
+	 */
+	private final Thread thread;
+
+	/**
+	 * Error reading the source, passed on at the end of the stream
+	 */
+	private volatile IOException error = null;
+
+	/**
+	 * True once this stream is closed and the source is no longer
+	 * needed
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Chunk being read and position in it
+	 */
+	private byte[] current = null;
+	private int pos = 0;
+
+	/**
+	 * Constructor, starts reading source right away
+	 * @param source stream to read, closed at its end
+	 * @param name name of the reading thread
+	 */
+	public BackgroundInputStream(final InputStream source, String name) {
+		// decompressing belongs to the phase reading the stream
+		final Stats.Phase phase = Stats.current();
+		thread = new Thread(new Runnable() {
+			public void run() {
+				pump(source, phase);
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Reads the source into chunks until its end, an error or close()
+	 * @param source stream to read
+	 * @param phase phase to report the bytes allocated to
+	 */
+	private void pump(InputStream source, Stats.Phase phase) {
+		long bytes = Stats.allocatedBytes();
+		try {
+			while (!closed) {
+				byte[] chunk = new byte[CHUNK];
+				int n = 0;
+				while (n < CHUNK) {
+					int r = source.read(chunk, n, CHUNK - n);
+					if (r < 0) {
+						break;
+					}
+					n += r;
+				}
+				if (n > 0) {
+					queue.put(n == CHUNK ? chunk : Arrays.copyOf(chunk, n));
+				}
+				if (n < CHUNK) {
+					break;
+				}
+			}
+		}
+		catch (IOException eIO) {
+			error = eIO;
+		}
+		catch (InterruptedException eInt) {
+			// closed while waiting for the reader
+			return;
+		}
+		finally {
+			try {
+				source.close();
+			}
+			catch (IOException eIO) {
+				if (error == null) {
+					error = eIO;
+				}
+			}
+			phase.addWorkerBytes(bytes);
+		}
+		try {
+			queue.put(END);
+		}
+		catch (InterruptedException eInt) {
+			// closed, nobody is waiting for the end
+		}
+	}
+
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xFF);
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (current == null || (pos == current.length && current != END)) {
+			try {
+				current = queue.take();
+			}
+			catch (InterruptedException eInt) {
+				throw new InterruptedIOException();
+			}
+			pos = 0;
+		}
+		if (current == END) {
+			if (error != null) {
+				throw error;
+			}
+			return -1;
+		}
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	public void close() {
+		closed = true;
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,344 @@
+package auc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Reads and writes list files in a binary columnar format, so the same
+ * examples can be evaluated many times without parsing text.  All
+ * values are little-endian:
+ * <pre>
+ * magic    4 bytes "AUCB"
+ * version  int, 1
+ * flags    int, SORTED if the examples are sorted as by ExampleList.sort
+ * reserved int, 0
+ * count    long, number of examples
+ * probs    count doubles
+ * classes  count bytes, 1 for positive and 0 for negative
+ * weights  count doubles
+ * </pre>
+ * Files are memory mapped and copied column by column into an
+ * ExampleList.  The SORTED flag of a file is checked in the same
+ * O(n) pass as reading it, and a sorted file gives a list that is
+ * known to be sorted, so Confusion.createConfusion does not sort it.
+ */
+public class BinaryList {
+	/**
+	 * First bytes of every binary list file
+	 */
+	private static final byte[] MAGIC = {'A', 'U', 'C', 'B'};
+
+	/**
+	 * Format version written
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Flag for files whose examples are sorted
+	 */
+	public static final int SORTED = 1;
+
+	/**
+	 * Bytes before the first column
+	 */
+	private static final int HEADER = 24;
+
+	/**
+	 * Most bytes mapped or buffered at once
+	 */
+	private static final int CHUNK = 1 << 26;
+
+	/**
+	 * Checks if a file starts with the binary list magic
+	 * @param file file to check
+	 * @return true if the file is a binary list file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] b = new byte[MAGIC.length];
+			int n = 0;
+			while (n < b.length) {
+				int r = in.read(b, n, b.length - n);
+				if (r < 0) {
+					return false;
+				}
+				n += r;
+			}
+			for (int i = 0; i < b.length; i++) {
+				if (b[i] != MAGIC[i]) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks if a stream starts with the binary list magic, without
+	 * consuming anything
+	 * @param in stream to check, must support mark
+	 * @return true if the stream holds a binary list file
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static boolean isBinary(InputStream in) throws IOException {
+		in.mark(MAGIC.length);
+		try {
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (in.read() != (MAGIC[i] & 0xFF)) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Reads a binary list file from a stream, such as standard input
+	 * or a decompressing stream, which cannot be memory mapped
+	 * @param in stream to read, not closed
+	 * @return examples of the stream, in order
+	 * @throws IOException if the stream cannot be read or does not
+	 *         hold a binary list file
+	 */
+	public static ExampleList read(InputStream in) throws IOException {
+		DataInputStream din = new DataInputStream(in);
+		byte[] bytes = new byte[HEADER];
+		din.readFully(bytes);
+		ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header.get(i) != MAGIC[i]) {
+				throw new IOException("Not a binary list file");
+			}
+		}
+		int version = header.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary list version " + version);
+		}
+		int flags = header.getInt(8);
+		long count = header.getLong(16);
+		if (count < 0 || count > Integer.MAX_VALUE - 8) {
+			throw new IOException("Bad binary list example count " + count);
+		}
+
+		int n = (int)count;
+		double[] probs = new double[Math.max(n, 1)];
+		byte[] classes = new byte[probs.length];
+		double[] weights = new double[probs.length];
+		byte[] chunk = new byte[Math.min(CHUNK, Math.max(8, 8 * n))];
+		readDoubles(din, chunk, probs, n);
+		din.readFully(classes, 0, n);
+		readDoubles(din, chunk, weights, n);
+		return create(probs, classes, weights, n, flags);
+	}
+
+	/**
+	 * Creates the list of the columns read from a file.  A file
+	 * flagged SORTED is checked in one pass, and a file that turns
+	 * out not to be sorted is sorted like an unflagged one instead of
+	 * giving wrong curves.
+	 * @throws IOException if a classification is not 0 or 1
+	 */
+	private static ExampleList create(double[] probs, byte[] classes,
+			double[] weights, int n, int flags) throws IOException {
+		for (int i = 0; i < n; i++) {
+			if (classes[i] != 0 && classes[i] != 1) {
+				throw new IOException("Bad binary list classification "
+						+ classes[i] + " of example " + i);
+			}
+		}
+		boolean sorted = (flags & SORTED) != 0;
+		if (sorted && !ExampleList.isSorted(probs, classes, n)) {
+			System.err.println("WARNING: binary list file flagged as sorted is not "
+					+ "sorted - sorting it");
+			sorted = false;
+		}
+		return new ExampleList(probs, classes, weights, n, sorted);
+	}
+
+	/**
+	 * Copies a column of doubles out of a stream, a chunk at a time
+	 */
+	private static void readDoubles(DataInputStream in, byte[] chunk,
+			double[] values, int n) throws IOException {
+		int per = chunk.length / 8;
+		for (int i = 0; i < n; i += per) {
+			int len = Math.min(per, n - i);
+			in.readFully(chunk, 0, 8 * len);
+			ByteBuffer.wrap(chunk, 0, 8 * len).order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer().get(values, i, len);
+		}
+	}
+
+	/**
+	 * Reads a binary list file
+	 * @param file file to read
+	 * @return examples of the file, in file order
+	 * @throws IOException if the file cannot be read or is not a
+	 *         binary list file
+	 */
+	public static ExampleList read(File file) throws IOException {
+		FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(HEADER, channel.size()));
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.remaining() < HEADER) {
+				throw new IOException("Truncated binary list header");
+			}
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (header.get(i) != MAGIC[i]) {
+					throw new IOException("Not a binary list file");
+				}
+			}
+			int version = header.getInt(4);
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary list version " + version);
+			}
+			int flags = header.getInt(8);
+			long count = header.getLong(16);
+			if (count < 0 || count > Integer.MAX_VALUE - 8
+					|| channel.size() < HEADER + 17 * count) {
+				throw new IOException("Bad binary list example count " + count);
+			}
+
+			int n = (int)count;
+			double[] probs = new double[Math.max(n, 1)];
+			byte[] classes = new byte[probs.length];
+			double[] weights = new double[probs.length];
+			readDoubles(channel, HEADER, probs, n);
+			readBytes(channel, HEADER + 8L * n, classes, n);
+			readDoubles(channel, HEADER + 9L * n, weights, n);
+			return create(probs, classes, weights, n, flags);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Copies a column of doubles out of the file, mapping a chunk at
+	 * a time
+	 */
+	private static void readDoubles(FileChannel channel, long pos,
+			double[] values, int n) throws IOException {
+		int per = CHUNK / 8;
+		for (int i = 0; i < n; i += per) {
+			int len = Math.min(per, n - i);
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+					pos + 8L * i, 8L * len);
+			map.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, i, len);
+		}
+	}
+
+	/**
+	 * Copies a column of bytes out of the file, mapping a chunk at a
+	 * time
+	 */
+	private static void readBytes(FileChannel channel, long pos,
+			byte[] values, int n) throws IOException {
+		for (int i = 0; i < n; i += CHUNK) {
+			int len = Math.min(CHUNK, n - i);
+			channel.map(FileChannel.MapMode.READ_ONLY, pos + i, len)
+				.get(values, i, len);
+		}
+	}
+
+	/**
+	 * Writes examples as a binary list file
+	 * @param list examples to write, sorted in place first if sorted
+	 *        is true
+	 * @param sorted true to sort the examples and flag the file as
+	 *        sorted
+	 * @param file file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(ExampleList list, boolean sorted, File file)
+	throws IOException {
+		if (sorted) {
+			list.sort();
+		}
+		int n = list.size();
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(Math.min(CHUNK,
+					Math.max(HEADER, 8 * n)));
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			buf.put(MAGIC);
+			buf.putInt(VERSION);
+			buf.putInt(sorted ? SORTED : 0);
+			buf.putInt(0);
+			buf.putLong(n);
+			flush(channel, buf);
+
+			for (int i = 0; i < n; i++) {
+				if (buf.remaining() < 8) {
+					flush(channel, buf);
+				}
+				buf.putDouble(list.getProb(i));
+			}
+			for (int i = 0; i < n; i++) {
+				if (!buf.hasRemaining()) {
+					flush(channel, buf);
+				}
+				buf.put((byte)list.getClassification(i));
+			}
+			for (int i = 0; i < n; i++) {
+				if (buf.remaining() < 8) {
+					flush(channel, buf);
+				}
+				buf.putDouble(list.getWeight(i));
+			}
+			flush(channel, buf);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes out everything put in buf and clears it
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buf)
+	throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Converts a list file to a binary list file.
+	 * Usage: java auc.BinaryList [-sorted] LISTFILE BINFILE
+	 * @param args command line arguments
+	 */
+	public static void main(String[] args) {
+		boolean sorted = false;
+		int index = 0;
+		if (args.length > 0 && args[0].equals("-sorted")) {
+			sorted = true;
+			index++;
+		}
+		if (args.length - index != 2) {
+			System.out.println("Usage:");
+			System.out.println("java auc.BinaryList [-sorted] LISTFILE BINFILE");
+			System.out.println("-sorted - sort the examples so reading BINFILE skips sorting");
+			return;
+		}
+		// the list file may also be compressed or - for standard input
+		ExampleList list = ReadList.readList(args[index], 1);
+		try {
+			write(list, sorted, new File(args[index+1]));
+		} catch (IOException ioe) {
+			System.err.println("ERROR: IO Exception in file " + args[index+1] + " - exiting...");
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package auc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Bootstrap estimates the sampling distribution of AUC-PR and AUC-ROC
+ * by recalculating them for resamples of a list of examples.  The
+ * examples are sorted once; each resample only draws a Poisson(1)
+ * count for every example and multiplies it into the example's weight,
+ * so the sorted order never changes and Confusion.createConfusion can
+ * sweep the same arrays again, while AUC-ROC comes straight from the
+ * weighted ranks.  Resample r always uses a random number generator
+ * seeded from the seed and r, so the results depend only on the seed
+ * and not on the number of threads.
+ */
+public class Bootstrap {
+	/**
+	 * Odd constant spreading the seeds of consecutive resamples
+	 */
+	private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Cumulative Poisson(1) probabilities, P(X<=k) for each k
+	 */
+	private static final double[] POISSON_CDF;
+
+	static {
+		ArrayList<Double> cdf = new ArrayList<Double>();
+		double p = Math.exp(-1.0);
+		double total = p;
+		for (int k = 1; total < 1.0 - 1e-16; k++) {
+			cdf.add(total);
+			p /= k;
+			total += p;
+		}
+		cdf.add(1.0);
+		POISSON_CDF = new double[cdf.size()];
+		for (int k = 0; k < POISSON_CDF.length; k++) {
+			POISSON_CDF[k] = cdf.get(k);
+		}
+	}
+
+	/**
+	 * Examples being resampled, sorted
+	 */
+	private final ExampleList list;
+
+	/**
+	 * Min recall for calculating area under PR curve
+	 */
+	private final double minRecall;
+
+	/**
+	 * Integrate the PR curve in closed form instead of over
+	 * interpolated points
+	 */
+	private final boolean closedForm;
+
+	/**
+	 * AUC-PR of each resample
+	 */
+	private double[] aucPR = new double[0];
+
+	/**
+	 * AUC-ROC of each resample
+	 */
+	private double[] aucROC = new double[0];
+
+	/**
+	 * Constructor
+	 * @param list examples to resample, sorted in place
+	 * @param minRecall the lower bound cutoff for recall
+	 * @param closedForm true to integrate AUC-PR in closed form
+	 */
+	public Bootstrap(ExampleList list, double minRecall, boolean closedForm) {
+		list.sort();
+		this.list = list;
+		this.minRecall = minRecall;
+		this.closedForm = closedForm;
+	}
+
+	/**
+	 * Calculates the areas of a number of resamples
+	 * @param replicates number of resamples
+	 * @param seed seed for the random number generators
+	 * @param threads number of threads calculating resamples
+	 */
+	public void run(int replicates, final long seed, int threads) {
+		aucPR = new double[replicates];
+		aucROC = new double[replicates];
+
+		threads = Math.max(1, Math.min(threads, replicates));
+		if (threads == 1) {
+			resample(seed, 0, replicates);
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			int step = (replicates + threads - 1) / threads;
+			ArrayList<Future<?>> parts = new ArrayList<Future<?>>();
+			for (int from = 0; from < replicates; from += step) {
+				final int lo = from;
+				final int hi = Math.min(replicates, from + step);
+				parts.add(pool.submit(new Runnable() {
+					public void run() {
+						resample(seed, lo, hi);
+					}
+				}));
+			}
+			for (Future<?> f : parts) {
+				try {
+					f.get();
+				}
+				catch (InterruptedException eInt) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(eInt);
+				}
+				catch (ExecutionException eExec) {
+					if (eExec.getCause() instanceof RuntimeException) {
+						throw (RuntimeException)eExec.getCause();
+					}
+					throw new RuntimeException(eExec.getCause());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Calculates the areas of resamples [from,to)
+	 * @param seed seed for the random number generators
+	 * @param from first resample
+	 * @param to one past the last resample
+	 */
+	private void resample(long seed, int from, int to) {
+		int n = list.size();
+		double[] weights = new double[n];
+		ExampleList sample = list.reweight(weights);
+		for (int r = from; r < to; r++) {
+			Random random = new Random(seed + r * SEED_STEP);
+			double posWeight = 0;
+			double negWeight = 0;
+			for (int i = 0; i < n; i++) {
+				weights[i] = list.getWeight(i) * poisson(random);
+				if (list.getClassification(i) == 1) {
+					posWeight += weights[i];
+				} else {
+					negWeight += weights[i];
+				}
+			}
+			if (posWeight <= 0 || negWeight <= 0) {
+				// no curve, left out of the intervals
+				aucPR[r] = Double.NaN;
+				aucROC[r] = Double.NaN;
+				continue;
+			}
+			// already sorted, so only the sweep is repeated
+			Confusion points = Confusion.createConfusion(sample, !closedForm, true);
+			aucPR[r] = points.areaPR(minRecall, closedForm);
+			aucROC[r] = Confusion.calculateAUCROC(sample);
+		}
+	}
+
+	/**
+	 * Draws from a Poisson distribution with mean 1
+	 * @param random random number generator
+	 * @return number of times an example appears in the resample
+	 */
+	private static int poisson(Random random) {
+		double u = random.nextDouble();
+		int k = 0;
+		while (u > POISSON_CDF[k]) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Number of resamples calculated
+	 * @return number of resamples
+	 */
+	public int getReplicates() {
+		return aucPR.length;
+	}
+
+	/**
+	 * AUC-PR of a resample
+	 * @param r index of the resample
+	 * @return AUC-PR, NaN if the resample lacks positive or negative
+	 *         examples
+	 */
+	public double getAUCPR(int r) {
+		return aucPR[r];
+	}
+
+	/**
+	 * AUC-ROC of a resample
+	 * @param r index of the resample
+	 * @return AUC-ROC, NaN if the resample lacks positive or negative
+	 *         examples
+	 */
+	public double getAUCROC(int r) {
+		return aucROC[r];
+	}
+
+	/**
+	 * Percentile interval of the AUC-PR of the resamples
+	 * @param level confidence level, such as 0.95
+	 * @return lower and upper bounds
+	 */
+	public double[] getAUCPRInterval(double level) {
+		return interval(aucPR, level);
+	}
+
+	/**
+	 * Percentile interval of the AUC-ROC of the resamples
+	 * @param level confidence level, such as 0.95
+	 * @return lower and upper bounds
+	 */
+	public double[] getAUCROCInterval(double level) {
+		return interval(aucROC, level);
+	}
+
+	/**
+	 * Percentile interval of areas, ignoring resamples whose area is
+	 * undefined
+	 * @param areas area of each resample
+	 * @param level confidence level
+	 * @return lower and upper bounds, NaN if no area is defined
+	 */
+	private static double[] interval(double[] areas, double level) {
+		double[] sorted = new double[areas.length];
+		int n = 0;
+		for (double a : areas) {
+			if (!Double.isNaN(a)) {
+				sorted[n++] = a;
+			}
+		}
+		if (n == 0) {
+			return new double[] {Double.NaN, Double.NaN};
+		}
+		Arrays.sort(sorted, 0, n);
+		double tail = 50.0 * (1.0 - level);
+		return new double[] {
+			CurveAverage.percentile(sorted, 0, n, tail),
+			CurveAverage.percentile(sorted, 0, n, 100.0 - tail)
+		};
+	}
+}
@@ -1,21 +1,22 @@
-
 package auc;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 
 
 /**
- * Confusion extends Vector and keeps track of the truePos/trueNeg
- * PNPoints.  It is used to sort, interpolate, and write out to both
- * ROC and PR files, and calculate both AUC-ROC and AUC-PR scores.
+ * Confusion keeps track of the truePos/trueNeg points of a curve in
+ * primitive columns and presents them as a list of PNPoints.  It is
+ * used to sort, interpolate, and write out to both ROC and PR files,
+ * and calculate both AUC-ROC and AUC-PR scores.
  *
  * @todo What about degenerate cases when totPos or totNeg = 0.0?
  * 
  * @author Mark Goadrich 2005
  * @author Kendrick Boyd 2010
  */
-public class Confusion extends Vector<PNPoint> {
+public class Confusion extends AbstractList<PNPoint> implements RandomAccess {
 	/**
 	 * Number of positives in dataset
 	 */
@@ -31,6 +32,23 @@ public class Confusion extends Vector<PNPoint> {
 	 */
 	private Confusion orig;
 
+	/**
+	 * True positive count of each point, only the first count
+	 * entries are used
+	 */
+	private double[] pos = new double[16];
+
+	/**
+	 * False positive count of each point, only the first count
+	 * entries are used
+	 */
+	private double[] neg = new double[16];
+
+	/**
+	 * Number of points currently stored
+	 */
+	private int count = 0;
+
 
 	/** 
 	 * Constructor using totPos and totNeg
@@ -49,6 +67,203 @@ public class Confusion extends Vector<PNPoint> {
 		}	
 	}
 
+	/**
+	 * Number of points in the Confusion
+	 * @return number of points
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the true positive count of a point without creating
+	 * a PNPoint
+	 * @param index index of the point
+	 * @return number of positives classified positive at the point
+	 */
+	public double getPos(int index) {
+		checkIndex(index);
+		return pos[index];
+	}
+
+	/**
+	 * Returns the false positive count of a point without creating
+	 * a PNPoint
+	 * @param index index of the point
+	 * @return number of negatives classified positive at the point
+	 */
+	public double getNeg(int index) {
+		checkIndex(index);
+		return neg[index];
+	}
+
+	/**
+	 * Returns the total number of positive examples
+	 * @return total positives
+	 */
+	public double getTotPos() {
+		return totPos;
+	}
+
+	/**
+	 * Returns the total number of negative examples
+	 * @return total negatives
+	 */
+	public double getTotNeg() {
+		return totNeg;
+	}
+
+	/**
+	 * Returns a PNPoint view of the point at index
+	 * @param index index of the point
+	 * @return new PNPoint holding the counts of the point
+	 */
+	public PNPoint get(int index) {
+		checkIndex(index);
+		return new PNPoint(pos[index], neg[index]);
+	}
+
+	/**
+	 * Vector style access to a point
+	 * @param index index of the point
+	 * @return new PNPoint holding the counts of the point
+	 */
+	public PNPoint elementAt(int index) {
+		return get(index);
+	}
+
+	/**
+	 * Replaces the point at index
+	 * @param index index of the point
+	 * @param p new point
+	 * @return the point previously at index
+	 */
+	public PNPoint set(int index, PNPoint p) {
+		PNPoint prev = get(index);
+		pos[index] = p.getPos();
+		neg[index] = p.getNeg();
+		return prev;
+	}
+
+	/**
+	 * Inserts a point at index, shifting later points up
+	 * @param index where to insert
+	 * @param p point to insert
+	 */
+	public void add(int index, PNPoint p) {
+		if (index < 0 || index > count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		ensureCapacity(count + 1);
+		System.arraycopy(pos, index, pos, index + 1, count - index);
+		System.arraycopy(neg, index, neg, index + 1, count - index);
+		pos[index] = p.getPos();
+		neg[index] = p.getNeg();
+		count++;
+		modCount++;
+	}
+
+	/**
+	 * Vector style insertion of a point
+	 * @param p point to insert
+	 * @param index where to insert
+	 */
+	public void insertElementAt(PNPoint p, int index) {
+		add(index, p);
+	}
+
+	/**
+	 * Removes the point at index, shifting later points down
+	 * @param index index of the point
+	 * @return the removed point
+	 */
+	public PNPoint remove(int index) {
+		PNPoint prev = get(index);
+		System.arraycopy(pos, index + 1, pos, index, count - index - 1);
+		System.arraycopy(neg, index + 1, neg, index, count - index - 1);
+		count--;
+		modCount++;
+		return prev;
+	}
+
+	/**
+	 * Vector style removal of a point
+	 * @param index index of the point
+	 */
+	public void removeElementAt(int index) {
+		remove(index);
+	}
+
+	/**
+	 * Removes all points
+	 */
+	public void clear() {
+		count = 0;
+		modCount++;
+	}
+
+	/**
+	 * Checks for a point within Point.EPSILON of o, without
+	 * creating PNPoints for the stored points
+	 * @param o object to look for
+	 * @return true if an equal point is stored
+	 */
+	public boolean contains(Object o) {
+		if (!(o instanceof PNPoint)) {
+			return false;
+		}
+		PNPoint p = (PNPoint)o;
+		for (int i = 0; i < count; i++) {
+			if (Math.abs(pos[i] - p.getPos()) <= Point.EPSILON
+					&& Math.abs(neg[i] - p.getNeg()) <= Point.EPSILON) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the counts of a point to the columns, growing them as needed.
+	 * Mirrors the checks in the PNPoint constructor.
+	 * @param p number of positives of the point
+	 * @param n number of negatives of the point
+	 */
+	private void append(double p, double n) {
+		if (p < 0 || n < 0) {
+			System.err.println("ERROR: " + p + "," + n + " - Defaulting "
+					+ "PNPoint to 0,0");
+			p = 0;
+			n = 0;
+		}
+		ensureCapacity(count + 1);
+		pos[count] = p;
+		neg[count] = n;
+		count++;
+		modCount++;
+	}
+
+	/**
+	 * Grows the columns to hold at least min points
+	 * @param min number of points needed
+	 */
+	private void ensureCapacity(int min) {
+		if (min > pos.length) {
+			int cap = Math.max(min, pos.length + (pos.length >> 1) + 1);
+			pos = Arrays.copyOf(pos, cap);
+			neg = Arrays.copyOf(neg, cap);
+		}
+	}
+
+	/**
+	 * Throws ArrayIndexOutOfBoundsException like Vector for bad indices
+	 * @param index index to check
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+	}
+
 	/** 
 	 * Adds a Precision-Recall point to the Confusion
 	 * @param recall    the recall of this point
@@ -66,10 +281,8 @@ public class Confusion extends Vector<PNPoint> {
 		double falsePositive = ((truePositive - (precision * truePositive))
 				/ precision);
 
-		PNPoint toadd = new PNPoint(truePositive, falsePositive);
-		if (!contains(toadd)) {
-			add(toadd);
-		}
+		// duplicates are dropped when the points are sorted
+		append(truePositive, falsePositive);
 	}
 
 	/** 
@@ -88,10 +301,8 @@ public class Confusion extends Vector<PNPoint> {
 		double truePositive = (tpr * totPos);
 		double falsePositive = (fpr * totNeg);
 
-		PNPoint toadd = new PNPoint(truePositive, falsePositive);
-		if (!contains(toadd)) {
-			add(toadd);
-		}
+		// duplicates are dropped when the points are sorted
+		append(truePositive, falsePositive);
 	}
 
 	/** 
@@ -107,10 +318,8 @@ public class Confusion extends Vector<PNPoint> {
 			throw new NumberFormatException();
 		}
 
-		PNPoint toadd = new PNPoint(pos, neg);
-		if (!contains(toadd)) {
-			add(toadd);
-		}
+		// duplicates are dropped when the points are sorted
+		append(pos, neg);
 	}
 
 	/**
@@ -118,9 +327,7 @@ public class Confusion extends Vector<PNPoint> {
 	 */
 	public void sort() {
 
-		if (AUCCalculator.DEBUG) {
-			System.out.println("--- Sorting the datapoints !!! ---");
-		}
+		Log.debug("--- Sorting the datapoints !!! ---");
 
 		// error checking
 		if (size() == 0) {
@@ -128,37 +335,230 @@ public class Confusion extends Vector<PNPoint> {
 			return;
 		}
 
-		// sort the vector by pos scores
-		PNPoint[] temp = new PNPoint[size()];
-		int i = 0;
-		while (size() > 0) {
-			temp[i++] = elementAt(0);
-			removeElementAt(0);
+		// sort the columns by pos scores, then drop duplicates
+		arrange(false);
+	}
+
+	/**
+	 * Sorts the points and adds the interpolated points between them,
+	 * writing the result in one forward pass.  Gives the same points
+	 * as calling sort() and then interpolate().
+	 */
+	public void sortAndInterpolate() {
+
+		// error checking
+		if (size() == 0) {
+			sort();
+			interpolate();
+			return;
+		}
+
+		Log.debug("--- Sorting the datapoints !!! ---");
+		Log.debug("--- Interpolating New Points ---");
+
+		arrange(true);
+	}
+
+	/**
+	 * Sorts the non-empty points, drops duplicates and adds the
+	 * anchors, without debugging output.  When interpolating, the
+	 * pass adding the anchors also adds the interpolated points, and
+	 * is recorded as the interpolate phase.
+	 * @param interpolate true to also add the interpolated points
+	 */
+	private void arrange(boolean interpolate) {
+		Stats.Phase phase = Stats.begin("sort");
+		sortColumns(pos, neg, count);
+		removeDuplicates();
+		if (!interpolate) {
+			rebuild(false);
+		}
+		phase.end(count);
+		if (interpolate) {
+			phase = Stats.begin("interpolate");
+			rebuild(true);
+			phase.end(count);
 		}
-		Arrays.sort(temp);
-		for (int j = 0; j < temp.length; j++) {
-			add(temp[j]);
+	}
+
+	/**
+	 * Sorts the points of a Confusion just created from a sweep, and
+	 * those of its original points
+	 * @param interpolate true to add the interpolated points
+	 * @param quiet true to leave out the debugging output
+	 */
+	private void finish(boolean interpolate, boolean quiet) {
+		if (quiet) {
+			orig.arrange(false);
+			arrange(interpolate);
+		} else {
+			orig.sort();
+			if (interpolate) {
+				sortAndInterpolate();
+			} else {
+				sort();
+			}
 		}
+		//System.out.println(this);
+	}
+
+	/**
+	 * Replaces the sorted, duplicate free points with the anchors of
+	 * the curve: leading points with no positives are removed, a
+	 * point at 1 positive is added in front and the point at
+	 * (totPos,totNeg) is added at the end.  Everything is written
+	 * into a fresh buffer, so nothing is shifted.
+	 * @param interpolate true to also add the interpolated points
+	 *        between consecutive anchors
+	 */
+	private void rebuild(boolean interpolate) {
 
 		// ??? Removal ok???
-		PNPoint first = elementAt(0);
-		while(first.getPos() < 0.001 && first.getPos() > -0.001) {
-			removeElementAt(0);
-			first = elementAt(0);
+		int start = 0;
+		while (getPos(start) < 0.001 && getPos(start) > -0.001) {
+			start++;
 		}
+		double firstPos = pos[start];
+		double firstNeg = neg[start];
 
 		// add in first point of 1 pos recall
-		double neg = first.getNeg() / first.getPos();
+		PNPoint lead = new PNPoint(1, firstNeg / firstPos);
+		boolean addLead = !contains(lead, start, count) && firstPos > 1;
 
-		PNPoint toadd = new PNPoint(1, neg);
-		if (!contains(toadd) && first.getPos() > 1) {
-			insertElementAt(toadd, 0);
+		// add in final point of full recall, precision of %pos in dataset
+		PNPoint tail = new PNPoint(totPos, totNeg);
+		boolean addTail = !contains(tail, start, count)
+			&& !(addLead && lead.equals(tail));
+
+		Columns out = new Columns(count - start + 2);
+		if (addLead) {
+			out.add(lead.getPos(), lead.getNeg());
+		}
+		for (int i = start; i < count; i++) {
+			if (interpolate && out.n > 0) {
+				out.interpolate(pos[i], neg[i]);
+			}
+			out.add(pos[i], neg[i]);
 		}
+		if (addTail) {
+			if (interpolate) {
+				out.interpolate(tail.getPos(), tail.getNeg());
+			}
+			out.add(tail.getPos(), tail.getNeg());
+		}
+		replace(out);
+	}
 
-		// add in final point of full recall, precision of %pos in dataset
-		toadd = new PNPoint(totPos, totNeg);
-		if (!contains(toadd)) {
-			add(toadd);
+	/**
+	 * Checks the points in [from,to) for one within Point.EPSILON of p
+	 * @param p point to look for
+	 * @param from first index to check
+	 * @param to one past the last index to check
+	 * @return true if an equal point is stored
+	 */
+	private boolean contains(PNPoint p, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (Math.abs(pos[i] - p.getPos()) <= Point.EPSILON
+					&& Math.abs(neg[i] - p.getNeg()) <= Point.EPSILON) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes the columns of out the points of this Confusion
+	 * @param out new points
+	 */
+	private void replace(Columns out) {
+		pos = out.pos;
+		neg = out.neg;
+		count = out.n;
+		modCount++;
+	}
+
+	/**
+	 * Drops points within Point.EPSILON of an earlier point.  Points
+	 * must already be sorted, so only the kept points with pos within
+	 * Point.EPSILON of the current point need to be searched.
+	 */
+	private void removeDuplicates() {
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (!Point.containsNear(pos, neg, kept, pos[i], neg[i], true)) {
+				pos[kept] = pos[i];
+				neg[kept] = neg[i];
+				kept++;
+			}
+		}
+		count = kept;
+		modCount++;
+	}
+
+	/**
+	 * Sorts the first n entries of the pos and neg columns together,
+	 * by pos and then by neg, in the same order as PNPoint.compareTo.
+	 * Points built from a list are usually already in order, which
+	 * is checked first.
+	 * @param pos pos column
+	 * @param neg neg column
+	 * @param n number of points
+	 */
+	private static void sortColumns(double[] pos, double[] neg, int n) {
+		boolean sorted = true;
+		for (int i = 1; i < n && sorted; i++) {
+			sorted = !less(pos[i], neg[i], pos[i-1], neg[i-1]);
+		}
+		if (!sorted) {
+			mergeSort(pos, neg, pos.clone(), neg.clone(), 0, n);
+		}
+	}
+
+	/**
+	 * Compares two points by pos and then by neg
+	 * @return true if point a is before point b
+	 */
+	private static boolean less(double aPos, double aNeg, double bPos, double bNeg) {
+		return aPos < bPos || (aPos == bPos && aNeg < bNeg);
+	}
+
+	/**
+	 * Stable merge sort of the range [lo,hi) of pos and neg, using
+	 * tmpPos and tmpNeg (copies of pos and neg) as scratch space.
+	 */
+	private static void mergeSort(double[] pos, double[] neg,
+			double[] tmpPos, double[] tmpNeg, int lo, int hi) {
+		if (hi - lo < 16) {
+			// insertion sort for small ranges
+			for (int i = lo + 1; i < hi; i++) {
+				double p = pos[i], n = neg[i];
+				int j = i - 1;
+				while (j >= lo && less(p, n, pos[j], neg[j])) {
+					pos[j+1] = pos[j];
+					neg[j+1] = neg[j];
+					j--;
+				}
+				pos[j+1] = p;
+				neg[j+1] = n;
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		mergeSort(pos, neg, tmpPos, tmpNeg, lo, mid);
+		mergeSort(pos, neg, tmpPos, tmpNeg, mid, hi);
+		System.arraycopy(pos, lo, tmpPos, lo, hi - lo);
+		System.arraycopy(neg, lo, tmpNeg, lo, hi - lo);
+		int i = lo, j = mid;
+		for (int k = lo; k < hi; k++) {
+			if (j >= hi || (i < mid && !less(tmpPos[j], tmpNeg[j], tmpPos[i], tmpNeg[i]))) {
+				pos[k] = tmpPos[i];
+				neg[k] = tmpNeg[i];
+				i++;
+			} else {
+				pos[k] = tmpPos[j];
+				neg[k] = tmpNeg[j];
+				j++;
+			}
 		}
 	}
 
@@ -168,9 +568,7 @@ public class Confusion extends Vector<PNPoint> {
 	 */
 	public void interpolate() {
 
-		if (AUCCalculator.DEBUG) {
-			System.out.println("--- Interpolating New Points ---");
-		}
+		Log.debug("--- Interpolating New Points ---");
 
 		// error checking
 		if (size() == 0) {
@@ -178,31 +576,75 @@ public class Confusion extends Vector<PNPoint> {
 			return;
 		}
 
-		// for each pair of points
-		for (int i = 0; i < size() - 1; i++) {
+		// for each pair of points, write the anchor and the new points
+		// after it into a fresh buffer
+		Stats.Phase phase = Stats.begin("interpolate");
+		Columns out = new Columns(count);
+		out.add(pos[0], neg[0]);
+		for (int i = 1; i < count; i++) {
+			out.interpolate(pos[i], neg[i]);
+			out.add(pos[i], neg[i]);
+		}
+		replace(out);
+		phase.end(count);
+	}
 
-			// add intermediate anchors
-			PNPoint p = elementAt(i);
-			PNPoint pnext = elementAt(i+1);
+	/**
+	 * Growable pos/neg columns that new points are written to
+	 */
+	private static class Columns {
+		double[] pos;
+		double[] neg;
+		int n = 0;
+
+		Columns(int capacity) {
+			pos = new double[Math.max(capacity, 16)];
+			neg = new double[pos.length];
+		}
+
+		void add(double p, double ng) {
+			if (n == pos.length) {
+				int cap = pos.length + (pos.length >> 1) + 1;
+				pos = Arrays.copyOf(pos, cap);
+				neg = Arrays.copyOf(neg, cap);
+			}
+			pos[n] = p;
+			neg[n] = ng;
+			n++;
+		}
+
+		/**
+		 * Adds the points one positive apart on the line from the
+		 * last point to (nextPos,nextNeg), not including either end.
+		 * @param nextPos pos of the next anchor
+		 * @param nextNeg neg of the next anchor
+		 */
+		void interpolate(double nextPos, double nextNeg) {
+			double initppos = pos[n-1];
+			double initpneg = neg[n-1];
 
 			// calculate ratio of negative increase to positive increase
-			double pdiff = pnext.getPos() - p.getPos();
-			double ndiff = pnext.getNeg() - p.getNeg();
+			double pdiff = nextPos - initppos;
+			double ndiff = nextNeg - initpneg;
 			double margin = ndiff / pdiff;
-			double initppos = p.getPos();
-			double initpneg = p.getNeg();
 
 			// as long as there is space to add new points, do so
-			while (Math.abs(p.getPos() - pnext.getPos()) > 1.001) {
-
-				double neg = initpneg + ((p.getPos() - initppos + 1 ) * margin);
-
-				PNPoint pnp = new PNPoint(p.getPos() + 1, neg);		
-				// increment i to skip all these new points
-				//System.out.println(pnp);
-				insertElementAt(pnp, ++i);
-				p = pnp;
-			}		
+			double p = initppos;
+			while (Math.abs(p - nextPos) > 1.001) {
+
+				double ng = initpneg + ((p - initppos + 1 ) * margin);
+
+				double np = p + 1;
+				if (np < 0 || ng < 0) {
+					// same check as the PNPoint constructor
+					System.err.println("ERROR: " + np + "," + ng + " - Defaulting "
+							+ "PNPoint to 0,0");
+					np = 0;
+					ng = 0;
+				}
+				add(np, ng);
+				p = np;
+			}
 		}
 	}
 
@@ -219,19 +661,129 @@ public class Confusion extends Vector<PNPoint> {
 	}
 
 
-	public Curve createPRCurve() {
+	/**
+	 * Calculate the area under the precision-recall curve by
+	 * integrating the interpolation between each pair of points in
+	 * closed form, so the interpolated points are never needed.
+	 * Between two points TP and FP grow linearly, which makes
+	 * precision a ratio of linear functions of recall with an
+	 * analytic integral.
+	 * @param minRecall the lower bound cutoff for recall
+	 * @return the AUC-PR
+	 */
+	public double calculateAUCPRClosedForm(double minRecall) {
+
+		Log.debug("--- Calculating closed form AUC-PR ---");
+		return closedFormArea(minRecall);
+	}
 
-		if (AUCCalculator.DEBUG) {
-			System.out.println("--- Creating AUC-PR ---");
+	/**
+	 * Calculate the AUC-PR in closed form without debugging output
+	 * @param minRecall the lower bound cutoff for recall
+	 * @return the AUC-PR
+	 */
+	private double closedFormArea(double minRecall) {
+		// error checking
+		if (size() == 0) {
+			throw new RuntimeException("Cannot find area of a curve with no points");
 		}
 
+		// horizontal line from recall 0.0 to the first point
+		double area = span(0.0, pos[0] / totPos, minRecall)
+			* (pos[0] / (pos[0] + neg[0]));
+
+		for (int i = 1; i < count; i++) {
+			area += segmentArea(pos[i-1], neg[i-1], pos[i], neg[i], minRecall);
+		}
+
+		// horizontal line from the last point to recall 1.0
+		int last = count - 1;
+		area += span(pos[last] / totPos, 1.0, minRecall)
+			* (pos[last] / (pos[last] + neg[last]));
+		return area;
+	}
+
+	/**
+	 * Length of the part of [lo,hi] that is at least minX
+	 */
+	private static double span(double lo, double hi, double minX) {
+		return Math.max(0.0, hi - Math.max(lo, minX));
+	}
+
+	/**
+	 * Area under the interpolated PR curve between two points, only
+	 * counting recall of at least minRecall.
+	 * @return area of the segment
+	 */
+	private double segmentArea(double aPos, double aNeg, double bPos, double bNeg,
+			double minRecall) {
+		return segmentArea(aPos, aNeg, bPos, bNeg, minRecall, totPos);
+	}
+
+	/**
+	 * Area under the interpolated PR curve between two points of a
+	 * curve with totPos positives, only counting recall of at least
+	 * minRecall.
+	 * @return area of the segment
+	 */
+	private static double segmentArea(double aPos, double aNeg, double bPos,
+			double bNeg, double minRecall, double totPos) {
+		double d = bPos - aPos;
+		if (d <= 0) {
+			// vertical line, no area
+			return 0.0;
+		}
+
+		// start at the first TP count with recall>=minRecall
+		double x0 = Math.max(0.0, minRecall * totPos - aPos);
+		if (x0 >= d) {
+			return 0.0;
+		}
+		double w = d - x0;
+		double k = 1 + (bNeg - aNeg) / d;
+		double tp = aPos + x0;
+		double total = tp + aNeg + (k - 1) * x0;
+
+		// integral of (tp+u)/(total+k*u) for u in [0,w] is
+		// (tp*w/total)*(L/t) + (w*w/total)*((t-L)/t^2)
+		// with t=k*w/total and L=ln(1+t)
+		double t = k * w / total;
+		double lOverT, rest;
+		if (Math.abs(t) < 1e-4) {
+			// series expansion, avoids cancellation for nearly
+			// constant precision
+			lOverT = 1 - t/2 + t*t/3;
+			rest = 0.5 - t/3 + t*t/4;
+		} else {
+			double l = Math.log1p(t);
+			lOverT = l / t;
+			rest = (t - l) / (t * t);
+		}
+		double integral = (tp * w / total) * lOverT + (w * w / total) * rest;
+		return integral / totPos;
+	}
+
+
+	public Curve createPRCurve() {
+
+		Log.debug("--- Creating AUC-PR ---");
+
 		// error checking
 
 		if (size() == 0) {
 			System.err.println("ERROR: No data to calculate....");
 			return null;
 		}
+		return prCurve();
+	}
 
+	/**
+	 * Creates the PR curve of a non-empty Confusion without debugging
+	 * output
+	 * @return Curve object
+	 */
+	private Curve prCurve() {
+		Stats.Phase phase = Stats.begin("createPRCurve");
 		Curve prCurve = new Curve(false);
 		for (int i=0;i<size();i++) {
 			PNPoint p = elementAt(i);
@@ -239,10 +791,89 @@ public class Confusion extends Vector<PNPoint> {
 			double prec = (p.getPos()/(p.getPos()+p.getNeg()));
 			prCurve.add(rec,prec);
 		}
+		phase.end(size());
 		return prCurve;
 	}
 
 
+	/**
+	 * Calculate the area under the ROC curve of a list of examples as
+	 * a weighted rank statistic, straight from the sorted columns
+	 * without creating any points or curves.  Sweeping down from the
+	 * highest probability, each group of probabilities within
+	 * Point.EPSILON adds the trapezoid between the cumulative counts
+	 * before and after it, which counts ties as half.  Matches
+	 * createConfusion(list, ...).calculateAUCROC(), including leaving
+	 * out the leading points with no positives so the first positive
+	 * group is joined straight to (0,0).
+	 * @param list examples, sorted in place
+	 * @return the AUC-ROC
+	 */
+	public static double calculateAUCROC(ExampleList list) {
+		list.sort();
+
+		double posCount = 0;
+		double negCount = 0;
+		// cumulative counts of the last point on the curve
+		double prevPos = 0;
+		double prevNeg = 0;
+		double area = 0;
+
+		int last = list.size()-1;
+		double prevprob = list.getProb(last);
+		for (int i = last; i >= 0; i--) {
+			double prob = list.getProb(i);
+			if (Math.abs(prob-prevprob)>Point.EPSILON) {
+				// end of a group, same points as createConfusion
+				if (posCount >= 0.001) {
+					area += 0.5 * (negCount - prevNeg) * (posCount + prevPos);
+					prevPos = posCount;
+					prevNeg = negCount;
+				}
+			}
+			prevprob = prob;
+
+			if (list.getClassification(i) == 1) {
+				posCount += list.getWeight(i);
+			} else {
+				negCount += list.getWeight(i);
+			}
+		}
+
+		if (posCount < 1 || negCount < 1) {
+			// the Confusion defaults its totals, leave it to the
+			// Confusion so the same area or error results
+			return createConfusion(list, false).areaROC();
+		}
+		area += 0.5 * (negCount - prevNeg) * (posCount + prevPos);
+		return area / (posCount * negCount);
+	}
+
+	/**
+	 * Calculate the AUC-PR of a non-empty Confusion without debugging
+	 * output, for areas calculated many times such as when resampling
+	 * @param minRecall the lower bound cutoff for recall
+	 * @param closedForm true to integrate in closed form, as
+	 *        calculateAUCPRClosedForm does, instead of as calculateAUCPR
+	 * @return the AUC-PR
+	 */
+	double areaPR(double minRecall, boolean closedForm) {
+		if (closedForm) {
+			return closedFormArea(minRecall);
+		}
+		return prCurve().getArea(minRecall);
+	}
+
+	/**
+	 * Calculate the AUC-ROC of a non-empty Confusion without debugging
+	 * output, as calculateAUCROC does
+	 * @return the AUC-ROC
+	 */
+	double areaROC() {
+		return rocCurve().getArea();
+	}
+
+
 	public double calculateAUCROC() {
 		Curve rocCurve = createROCCurve();
 		return rocCurve.getArea();
@@ -257,9 +888,7 @@ public class Confusion extends Vector<PNPoint> {
 	public Curve createROCCurve() {
 
 
-		if (AUCCalculator.DEBUG) {
-			System.out.println("--- Calculating AUC-ROC ---");
-		}
+		Log.debug("--- Calculating AUC-ROC ---");
 
 
 		// error checking
@@ -267,8 +896,16 @@ public class Confusion extends Vector<PNPoint> {
 			System.err.println("ERROR: No data to calculate....");
 			return null;
 		}
+		return rocCurve();
+	}
 
-
+	/**
+	 * Creates the ROC curve of a non-empty Confusion without debugging
+	 * output
+	 * @return Curve object
+	 */
+	private Curve rocCurve() {
+		Stats.Phase phase = Stats.begin("createROCCurve");
 		Curve rocCurve = new Curve(true);
 		rocCurve.add(0.0,0.0); // guarantee the point is there
 		rocCurve.add(1.0,1.0);
@@ -279,6 +916,7 @@ public class Confusion extends Vector<PNPoint> {
 			rocCurve.add(fpr,tpr);
 
 		}
+		phase.end(size());
 		return rocCurve;
 	}
 
@@ -288,7 +926,9 @@ public class Confusion extends Vector<PNPoint> {
 	 */
 	public void writePRFile(String fileName) {
 
-		System.out.println("--- Writing PR file " + fileName + " ---");
+		if (Log.isInfo()) {
+			Log.info("--- Writing PR file " + fileName + " ---");
+		}
 
 		if (size() == 0) {
 			System.err.println("ERROR: No data to write....");
@@ -296,12 +936,7 @@ public class Confusion extends Vector<PNPoint> {
 		}
 
 		try {
-			PrintWriter fout = new PrintWriter(new FileWriter(new File(fileName)));
-			Curve prCurve = createPRCurve();
-			prCurve.write(fout);
-
-			fout.close();
-
+			writeCurve(createPRCurve(), fileName, "writePRFile");
 		} catch (IOException ioe) {
 			// javac made me do it..
 			System.out.println("ERROR: IO Exception in file " + 
@@ -317,7 +952,9 @@ public class Confusion extends Vector<PNPoint> {
 	 * @param fileName
 	 */
 	public void writeOriginalPRFile(String fileName) {
-		System.out.println("--- Writing original PR points " + fileName + " ---");
+		if (Log.isInfo()) {
+			Log.info("--- Writing original PR points " + fileName + " ---");
+		}
 
 		if (orig.size() == 0) {
 			System.err.println("ERROR: No data to write....");
@@ -325,37 +962,70 @@ public class Confusion extends Vector<PNPoint> {
 		}
 
 		try {
-			PrintWriter fout = new PrintWriter(new FileWriter(new File(fileName)));
-			
+			writeOriginalPoints(fileName);
+		} catch (IOException ioe) {
+			// javac made me do it..
+			System.out.println("ERROR: IO Exception in file " + 
+					fileName + " - exiting...");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Writes the original PR points, the highest precision of each
+	 * recall, with 10 decimals as %.10f does
+	 * @param fileName name of the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeOriginalPoints(String fileName) throws IOException {
+		Stats.Phase phase = Stats.begin("writeOriginalPRFile");
+		long lines = 0;
+		CurveWriter fout = new CurveWriter(fileName);
+		try {
 			// don't use a curve - will interpolate and produce two points with same recall
-			//Curve prCurve = orig.createPRCurve();
-			//prCurve.write(fout);
 			double prevRecall=2, prevPrecision=2;
-			for (PNPoint p : orig) {
+			for (int i = 0; i < orig.count; i++) {
 				// recall: pos / totpos
 				// precision: pos / pos + neg
-				double recall = p.getPos() / orig.totPos;
-				double precision = p.getPos() / (p.getPos() + p.getNeg());
+				double recall = orig.pos[i] / orig.totPos;
+				double precision = orig.pos[i] / (orig.pos[i] + orig.neg[i]);
 				
 				// same recall, lower precision? don't print.
 				if (Math.abs(recall-prevRecall)<Point.EPSILON && precision < prevPrecision) {
 					
 				} else {
-					fout.format("%.10f\t%.10f\n", recall, precision);
+					fout.writeFixed(recall, 10);
+					fout.write('\t');
+					fout.writeFixed(precision, 10);
+					fout.write('\n');
+					lines++;
 				}
 				prevRecall=recall;
 				prevPrecision=precision;
-				
 			}
-
+		} finally {
 			fout.close();
+		}
+		phase.end(lines);
+	}
 
-		} catch (IOException ioe) {
-			// javac made me do it..
-			System.out.println("ERROR: IO Exception in file " + 
-					fileName + " - exiting...");
-			System.exit(-1);
+	/**
+	 * Writes a curve to a file, recording the time as a phase
+	 * @param curve curve to write
+	 * @param fileName name of the file to write
+	 * @param name name of the phase
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeCurve(Curve curve, String fileName, String name)
+	throws IOException {
+		Stats.Phase phase = Stats.begin(name);
+		CurveWriter fout = new CurveWriter(fileName);
+		try {
+			curve.write(fout);
+		} finally {
+			fout.close();
 		}
+		phase.end(curve.size());
 	}
 
 	/** 
@@ -363,8 +1033,20 @@ public class Confusion extends Vector<PNPoint> {
 	 * @param fileName name of the file to output curve
 	 */
 	public void writeStandardPRFile(String fileName) {
+		writeStandardPRFile(fileName, 100);
+	}
 
-		System.out.println("--- Writing standardized PR file " + fileName + " ---");
+	/** 
+	 * Write out num+1 standardized PR points, at recalls i/num, to
+	 * fileName file
+	 * @param fileName name of the file to output curve
+	 * @param num number of samples
+	 */
+	public void writeStandardPRFile(String fileName, int num) {
+
+		if (Log.isInfo()) {
+			Log.info("--- Writing standardized PR file " + fileName + " ---");
+		}
 
 		if (size() == 0) {
 			System.err.println("ERROR: No data to write....");
@@ -372,14 +1054,8 @@ public class Confusion extends Vector<PNPoint> {
 		}
 
 		try {
-			PrintWriter fout = new PrintWriter(new FileWriter(new File(fileName)));
-
-			Curve sprCurve = createPRCurve().createStandardized(100);
-			sprCurve.write(fout);
-
-
-			fout.close();
-
+			writeCurve(createPRCurve().createStandardized(num), fileName,
+					"writeStandardPRFile");
 		} catch (IOException ioe) {
 			// javac made me do it..
 			System.out.println("ERROR: IO Exception in file " + 
@@ -394,7 +1070,9 @@ public class Confusion extends Vector<PNPoint> {
 	 */
 	public void writeROCFile(String fileName) {
 
-		System.out.println("--- Writing ROC file " + fileName + " ---");
+		if (Log.isInfo()) {
+			Log.info("--- Writing ROC file " + fileName + " ---");
+		}
 
 		if (size() == 0) {
 			System.err.println("ERROR: No data to write....");
@@ -402,13 +1080,7 @@ public class Confusion extends Vector<PNPoint> {
 		}
 
 		try {
-			PrintWriter fout = new PrintWriter(new FileWriter(new File(fileName)));
-
-			Curve rocCurve = createROCCurve();
-			rocCurve.write(fout);
-
-			fout.close();
-
+			writeCurve(createROCCurve(), fileName, "writeROCFile");
 		} catch (IOException ioe) {
 			// javac made me do it..
 			System.out.println("ERROR: IO Exception in file " + 
@@ -417,6 +1089,114 @@ public class Confusion extends Vector<PNPoint> {
 		}
 	}
 
+	/**
+	 * Writes the prefix.opr, prefix.pr, prefix.spr and prefix.roc
+	 * files at once, one thread per file.  The PR curve is created once
+	 * and shared by the .pr and .spr files.  The files are the same as
+	 * those of writeOriginalPRFile, writePRFile, writeStandardPRFile and
+	 * writeROCFile.
+	 * @param prefix prefix of the file names
+	 */
+	public void writeFiles(String prefix) {
+		writeFiles(prefix, 100, 0, 0.0);
+	}
+
+	/**
+	 * Writes the prefix.opr, prefix.pr, prefix.spr and prefix.roc
+	 * files at once, as writeFiles(prefix) does, with the .pr and .roc
+	 * curves simplified by Curve.simplify if maxPoints or maxError is
+	 * positive.  The .spr samples are taken from the full PR curve.
+	 * @param prefix prefix of the file names
+	 * @param standard number of samples of the .spr file
+	 * @param maxPoints most points of the .pr and .roc files, or 0
+	 * @param maxError largest vertical error of the .pr and .roc
+	 *        files, or 0, used if maxPoints is 0
+	 */
+	public void writeFiles(String prefix, int standard, int maxPoints,
+			double maxError) {
+		writeFiles(prefix, null, null, standard, maxPoints, maxError);
+	}
+
+	/**
+	 * Writes the prefix.opr, prefix.pr, prefix.spr and prefix.roc
+	 * files at once, as writeFiles(prefix, standard, maxPoints,
+	 * maxError) does, from curves already created for the areas
+	 * @param prefix prefix of the file names
+	 * @param prCurve PR curve from createPRCurve, or null to create it
+	 * @param rocCurve ROC curve from createROCCurve, or null to create it
+	 * @param standard number of samples of the .spr file
+	 * @param maxPoints most points of the .pr and .roc files, or 0
+	 * @param maxError largest vertical error of the .pr and .roc
+	 *        files, or 0, used if maxPoints is 0
+	 */
+	public void writeFiles(String prefix, Curve prCurve, Curve rocCurve,
+			final int standard, int maxPoints, double maxError) {
+		final String[] names = {prefix + ".opr", prefix + ".pr",
+				prefix + ".spr", prefix + ".roc"};
+		if (size() == 0 || orig == null || orig.size() == 0) {
+			// nothing to share, report the missing data file by file
+			writeOriginalPRFile(names[0]);
+			writePRFile(names[1]);
+			writeStandardPRFile(names[2], standard);
+			writeROCFile(names[3]);
+			return;
+		}
+		if (Log.isInfo()) {
+			Log.info("--- Writing original PR points " + names[0] + " ---");
+			Log.info("--- Writing PR file " + names[1] + " ---");
+			Log.info("--- Writing standardized PR file " + names[2] + " ---");
+			Log.info("--- Writing ROC file " + names[3] + " ---");
+		}
+		final Curve prFull = prCurve != null ? prCurve : createPRCurve();
+		final Curve prOut = prFull.simplify("PR", maxPoints, maxError);
+		final Curve rocOut = (rocCurve != null ? rocCurve : createROCCurve())
+			.simplify("ROC", maxPoints, maxError);
+
+		ExecutorService pool = Executors.newFixedThreadPool(names.length);
+		ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+		results.add(pool.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				writeOriginalPoints(names[0]);
+				return null;
+			}
+		}));
+		results.add(pool.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				writeCurve(prOut, names[1], "writePRFile");
+				return null;
+			}
+		}));
+		results.add(pool.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				writeCurve(prFull.createStandardized(standard), names[2],
+						"writeStandardPRFile");
+				return null;
+			}
+		}));
+		results.add(pool.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				writeCurve(rocOut, names[3], "writeROCFile");
+				return null;
+			}
+		}));
+		pool.shutdown();
+		for (int i = 0; i < names.length; i++) {
+			try {
+				results.get(i).get();
+			} catch (InterruptedException eInt) {
+				System.err.println("ERROR: Interrupted writing " + names[i] + " - exiting...");
+				System.exit(-1);
+			} catch (ExecutionException eExec) {
+				if (!(eExec.getCause() instanceof IOException)) {
+					throw new RuntimeException(eExec.getCause());
+				}
+				System.out.println("ERROR: IO Exception in file " + 
+						names[i] + " - exiting...");
+				System.exit(-1);
+			}
+		}
+	}
+
 	/** 
 	 * Returns a String represenation of the Confusion Object
 	 * @return String representation
@@ -433,63 +1213,286 @@ public class Confusion extends Vector<PNPoint> {
 
 
 	public static Confusion createConfusion(ArrayList<ClassSort> list) {
-		// sort predictions
-		double posCount = 0;
-		double negCount = 0;
-		double total = 0;
+		return createConfusion(list, true);
+	}
 
+	/**
+	 * Creates the Confusion for a list of examples
+	 * @param list examples, sorted in place
+	 * @param interpolate true to add the interpolated points, false to
+	 *        only keep the points at each threshold (enough for AUC-ROC
+	 *        and calculateAUCPRClosedForm)
+	 * @return Confusion object
+	 */
+	public static Confusion createConfusion(ArrayList<ClassSort> list,
+			boolean interpolate) {
 		Collections.sort(list);
+		return createConfusion(new ExampleList(list), interpolate);
+	}
 
-		ArrayList<PNPoint> list2 = new ArrayList<PNPoint>();
+	/**
+	 * Creates the Confusion for examples stored in primitive columns
+	 * @param list examples, sorted in place
+	 * @param interpolate true to add the interpolated points, false to
+	 *        only keep the points at each threshold
+	 * @return Confusion object
+	 */
+	public static Confusion createConfusion(ExampleList list,
+			boolean interpolate) {
+		return createConfusion(list, interpolate, false);
+	}
 
-		ClassSort cur = list.get(list.size()-1);
-		double prevprob = cur.getProb();
-		if (cur.getClassification() == 1) {
-			posCount += cur.getWeight();
-		} else {
-			negCount += cur.getWeight();
+	/**
+	 * Creates the Confusion for examples stored in primitive columns
+	 * @param list examples, sorted in place
+	 * @param interpolate true to add the interpolated points
+	 * @param quiet true to leave out the debugging output, for
+	 *        Confusions created many times such as per resample
+	 * @return Confusion object
+	 */
+	static Confusion createConfusion(ExampleList list,
+			boolean interpolate, boolean quiet) {
+		// sort predictions
+		Stats.Phase phase = Stats.begin("sortExamples");
+		list.sort();
+		phase.end(list.size());
+
+		phase = Stats.begin("createConfusion");
+		Sweep sweep = new Sweep(list.size());
+		for (int i = list.size()-1; i >=0; i--) {
+			sweep.add(list.getProb(i), list.getClassification(i), list.getWeight(i));
 		}
-		total += cur.getWeight();
-		for (int i = list.size()-2; i >=0; i--) {
-			cur = list.get(i);
-			double prob = cur.getProb();
+		Confusion points = sweep.points();
+		phase.end(list.size());
+		points.finish(interpolate, quiet);
+		return points;
+	}
 
-			int outcome = cur.getClassification();
-			//		System.out.println(prob + " " + outcome);
+	/**
+	 * Cumulative TP/FP sweep behind createConfusion.  Examples must be
+	 * added from the highest probability down, in the reverse of the
+	 * order ExampleList.sort puts them in, and a point is recorded at
+	 * each threshold between probabilities more than Point.EPSILON
+	 * apart.  The examples can come from a list or be streamed from a
+	 * merge of sorted runs that never fit in memory at once.
+	 */
+	static class Sweep implements ExampleSink {
+		double posCount = 0;
+		double negCount = 0;
+		double total = 0;
 
+		/**
+		 * Probability of the previous example
+		 */
+		double prevprob;
+
+		/**
+		 * True once the first example was added
+		 */
+		boolean started = false;
+
+		/**
+		 * Cumulative counts at each threshold, in increasing order
+		 */
+		double[] cumPos;
+		double[] cumNeg;
+		int n = 0;
+
+		/**
+		 * Constructor
+		 * @param capacity expected number of thresholds
+		 */
+		Sweep(int capacity) {
+			cumPos = new double[Math.max(capacity, 16)];
+			cumNeg = new double[cumPos.length];
+		}
+
+		/**
+		 * Adds the next example
+		 * @param prob probability, at most that of the previous example
+		 * @param outcome 1 for positive, 0 for negative
+		 * @param weight weight of the example
+		 */
+		public void add(double prob, int outcome, double weight) {
 			// don't use equals with double	    
-			if (Math.abs(prob-prevprob)>Point.EPSILON) {
-				//System.out.println(posCount+ " " + negCount + " " + prob);
-				list2.add(new PNPoint(posCount,negCount));
+			if (started && Math.abs(prob-prevprob)>Point.EPSILON) {
+				threshold();
 			}
+			started = true;
 			prevprob = prob;
 
 			if (outcome == 1) {
-				posCount += cur.getWeight();
+				posCount += weight;
 			} else {
-				negCount += cur.getWeight();
+				negCount += weight;
 			}
-			total += cur.getWeight();
+			total += weight;
 		}
-		list2.add(new PNPoint(posCount, negCount));
 
+		/**
+		 * Records the counts of the examples added so far
+		 */
+		void threshold() {
+			if (n == cumPos.length) {
+				int cap = n + (n >> 1) + 1;
+				cumPos = Arrays.copyOf(cumPos, cap);
+				cumNeg = Arrays.copyOf(cumNeg, cap);
+			}
+			cumPos[n] = posCount;
+			cumNeg[n] = negCount;
+			n++;
+		}
 
+		/**
+		 * Creates the Confusion of every example added
+		 * @param interpolate true to add the interpolated points
+		 * @param quiet true to leave out the debugging output
+		 * @return Confusion object
+		 */
+		Confusion createConfusion(boolean interpolate, boolean quiet) {
+			Stats.Phase phase = Stats.begin("createConfusion");
+			Confusion points = points();
+			phase.end(n);
+			points.finish(interpolate, quiet);
+			return points;
+		}
 
-		Confusion points = new Confusion(posCount, negCount);
-		points.orig = new Confusion(posCount, negCount);
+		/**
+		 * Creates the Confusion of the examples added so far, with its
+		 * points still to be sorted by finish
+		 * @return Confusion object
+		 */
+		Confusion points() {
+			if (!started) {
+				throw new IndexOutOfBoundsException("Cannot create a Confusion with no examples");
+			}
+			threshold();
+
+			Confusion points = new Confusion(posCount, negCount);
+			points.orig = new Confusion(posCount, negCount);
 		
-		for (PNPoint p : list2) {
-			points.addPoint(p.getPos(), p.getNeg());
-			points.orig.addPoint(p.getPos(), p.getNeg());
+			for (int i = 0; i < n; i++) {
+				points.addPoint(cumPos[i], cumNeg[i]);
+				points.orig.addPoint(cumPos[i], cumNeg[i]);
+			}
+			return points;
+		}
+	}
+
+	/**
+	 * Sweep that calculates the areas of the examples as they stream
+	 * past, from the highest probability down, without keeping a
+	 * point per threshold.  AUC-ROC is summed as calculateAUCROC(list)
+	 * sums it, and AUC-PR is integrated in closed form between the
+	 * points that createConfusion(list, false) would keep, including
+	 * its leading and final anchors, so the areas are those of
+	 * calculateAUCROC and calculateAUCPRClosedForm while memory stays
+	 * constant.  The totals must be known up front for the recall of
+	 * each point, such as from counting the examples before merging
+	 * sorted runs.
+	 */
+	static class StreamingAreas extends Sweep {
+		private final double totPos;
+		private final double totNeg;
+		private final double minRecall;
+
+		/**
+		 * Last point on the ROC curve and the area up to it
+		 */
+		private double rocPos = 0;
+		private double rocNeg = 0;
+		private double rocArea = 0;
+
+		/**
+		 * Last point kept on the PR curve and the area up to it
+		 */
+		private boolean kept = false;
+		private double prPos;
+		private double prNeg;
+		private double prArea = 0;
+
+		private double aucROC = Double.NaN;
+		private double aucPR = Double.NaN;
+
+		/**
+		 * Constructor
+		 * @param totPos weight of the positive examples, at least 1
+		 * @param totNeg weight of the negative examples, at least 1
+		 * @param minRecall the lower bound cutoff for recall
+		 */
+		StreamingAreas(double totPos, double totNeg, double minRecall) {
+			super(0);
+			this.totPos = totPos;
+			this.totNeg = totNeg;
+			this.minRecall = minRecall;
+		}
+
+		/**
+		 * Adds the point of the examples added so far to both areas
+		 */
+		void threshold() {
+			if (posCount >= 0.001) {
+				rocArea += 0.5 * (negCount - rocNeg) * (posCount + rocPos);
+				rocPos = posCount;
+				rocNeg = negCount;
+
+				if (!kept && posCount > 1) {
+					// first point of 1 pos recall
+					keep(1, negCount / posCount);
+				}
+				keep(posCount, negCount);
+			}
+		}
+
+		/**
+		 * Adds a point to the PR curve, dropping duplicates of the
+		 * last point as sort() drops them
+		 */
+		private void keep(double p, double n) {
+			if (!kept) {
+				// horizontal line from recall 0.0
+				prArea += span(0.0, p / totPos, minRecall) * (p / (p + n));
+			} else if (Math.abs(p - prPos) <= Point.EPSILON
+					&& Math.abs(n - prNeg) <= Point.EPSILON) {
+				return;
+			} else {
+				prArea += segmentArea(prPos, prNeg, p, n, minRecall, totPos);
+			}
+			kept = true;
+			prPos = p;
+			prNeg = n;
+		}
+
+		/**
+		 * Ends the stream and calculates the areas
+		 */
+		void finish() {
+			if (!started) {
+				throw new IndexOutOfBoundsException("Cannot find area of a curve with no examples");
+			}
+			threshold();
+			if (kept) {
+				// final point of full recall, then a horizontal line
+				// to recall 1.0
+				keep(totPos, totNeg);
+				prArea += span(prPos / totPos, 1.0, minRecall) * (prPos / (prPos + prNeg));
+				aucPR = prArea;
+			}
+			aucROC = rocArea / (posCount * negCount);
+		}
+
+		/**
+		 * @return area under the precision-recall curve
+		 */
+		double getAUCPR() {
+			return aucPR;
+		}
+
+		/**
+		 * @return area under the ROC curve
+		 */
+		double getAUCROC() {
+			return aucROC;
 		}
-		
-		//System.out.println(points);
-		points.sort();
-		points.orig.sort();
-		//System.out.println(points);
-		
-		points.interpolate();
-		//System.out.println(points);
-		return points;
 	}
 }
@@ -10,16 +10,33 @@ import java.io.*;
  * from the first and last points (sorted by x) to the respective
  * edges. Points from ROC and PR (with sufficient interpolation) can be
  * given to the Curve class to calculate area under the curve and for
- * vertical averaging.
+ * vertical averaging.  Points are kept in sorted primitive arrays
+ * rather than a tree of Point objects.
  * @author Kendrick Boyd 2010
  */
 public class Curve { 
 	/**
-	 * Points in the curve, in tree set for fast
-	 * checking for duplicates and locating nearest
-	 * values.
+	 * x values of the points in the curve.  Once compacted they are
+	 * sorted, with duplicates removed, so points can be located with
+	 * a binary search.
 	 */
-	private TreeSet<Point> points = null;
+	private double[] xs = new double[16];
+
+	/**
+	 * y values of the points in the curve
+	 */
+	private double[] ys = new double[16];
+
+	/**
+	 * Number of points in the curve
+	 */
+	private int count = 0;
+
+	/**
+	 * True if points were added since the curve was last sorted and
+	 * duplicates removed
+	 */
+	private volatile boolean dirty = false;
 
 	/**
 	 * How to sort y-value for same x-values, false sorts
@@ -36,43 +53,156 @@ public class Curve {
 	 */
 	public Curve(boolean sortAsc) {
 		this.sortAsc = sortAsc;
-		Comparator<Point> myComp = null;
-		if (sortAsc) {
-
-			myComp = new Comparator<Point>() {
-				public int compare(Point p1, Point p2) {
-					if (p1.getX()+Point.EPSILON<p2.getX()) return -1;
-					else if (p1.getX()>p2.getX()+Point.EPSILON) return 1;
-					else if (p1.getY()+Point.EPSILON<p2.getY()) return -1;
-					else if (p1.getY()>p2.getY()+Point.EPSILON) return 1;
-					else return 0;
-				}
-			};
+	}
+
+	/**
+	 * Adds a new point to the curve.  Points are sorted and points
+	 * within Point.EPSILON of an earlier one are dropped the next
+	 * time the curve is used.
+	 * @param x x value
+	 * @param y y value
+	 */
+	public synchronized void add(double x,double y) {
+		if (count == xs.length) {
+			int cap = xs.length + (xs.length >> 1) + 1;
+			xs = Arrays.copyOf(xs, cap);
+			ys = Arrays.copyOf(ys, cap);
 		}
-		else {
-			myComp = new Comparator<Point>() {
-				public int compare(Point p1, Point p2) {
-					if (p1.getX()+Point.EPSILON<p2.getX()) return -1;
-					else if (p1.getX()>p2.getX()+Point.EPSILON) return 1;
-					else if (p1.getY()+Point.EPSILON<p2.getY()) return 1;
-					else if (p1.getY()>p2.getY()+Point.EPSILON) return -1;
-					else return 0;
+		xs[count] = x;
+		ys[count] = y;
+		count++;
+		dirty = true;
+	}
+
+	/**
+	 * How same x-values are sorted
+	 * @return true if sorted by ascending y-value
+	 */
+	boolean isSortAsc() {
+		return sortAsc;
+	}
+
+	/**
+	 * Number of distinct points in the curve
+	 * @return number of points
+	 */
+	public int size() {
+		compact();
+		return count;
+	}
+
+	/**
+	 * x value of a point
+	 * @param index index of the point, points are sorted by x
+	 * @return x value
+	 */
+	public double getPointX(int index) {
+		compact();
+		if (index >= count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return xs[index];
+	}
+
+	/**
+	 * y value of a point
+	 * @param index index of the point, points are sorted by x
+	 * @return y value
+	 */
+	public double getPointY(int index) {
+		compact();
+		if (index >= count) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return ys[index];
+	}
+
+	/**
+	 * Sorts the points by x and then by y (as given by sortAsc) and
+	 * drops points within Point.EPSILON of an earlier point, if any
+	 * points were added since the last call.  The sort compares exact
+	 * x values, while the old TreeSet compared x within
+	 * Point.EPSILON, so points whose x differ by less than
+	 * Point.EPSILON are ordered by x here where the tree ordered them
+	 * by y.  Curves only differ from before when such points exist.
+	 */
+	void compact() {
+		if (!dirty) {
+			return;
+		}
+		synchronized (this) {
+			if (!dirty) {
+				return;
+			}
+			boolean sorted = true;
+			for (int i = 1; i < count && sorted; i++) {
+				sorted = !before(xs[i], ys[i], xs[i-1], ys[i-1]);
+			}
+			if (!sorted) {
+				mergeSort(xs.clone(), ys.clone(), 0, count);
+			}
+
+			// only kept points within Point.EPSILON in x can be equal
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				if (!Point.containsNear(xs, ys, kept, xs[i], ys[i], sortAsc)) {
+					xs[kept] = xs[i];
+					ys[kept] = ys[i];
+					kept++;
 				}
-			};
+			}
+			count = kept;
+			dirty = false;
 		}
-		points = new TreeSet<Point>(myComp);
+	}
 
+	/**
+	 * Compares two points by x and then by y in sortAsc order
+	 * @return true if point a is before point b
+	 */
+	private boolean before(double ax, double ay, double bx, double by) {
+		if (ax != bx) {
+			return ax < bx;
+		}
+		return sortAsc ? ay < by : ay > by;
 	}
 
 	/**
-	 * Adds a new point to the curve
-	 * @param x x value
-	 * @param y y value
+	 * Stable merge sort of the range [lo,hi) of xs and ys, using
+	 * tmpX and tmpY (copies of xs and ys) as scratch space.
 	 */
-	public void add(double x,double y) {
-		Point newP = new Point(x,y);
-		if (!points.contains(newP)) {
-			points.add(newP);
+	private void mergeSort(double[] tmpX, double[] tmpY, int lo, int hi) {
+		if (hi - lo < 16) {
+			// insertion sort for small ranges
+			for (int i = lo + 1; i < hi; i++) {
+				double x = xs[i], y = ys[i];
+				int j = i - 1;
+				while (j >= lo && before(x, y, xs[j], ys[j])) {
+					xs[j+1] = xs[j];
+					ys[j+1] = ys[j];
+					j--;
+				}
+				xs[j+1] = x;
+				ys[j+1] = y;
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		mergeSort(tmpX, tmpY, lo, mid);
+		mergeSort(tmpX, tmpY, mid, hi);
+		System.arraycopy(xs, lo, tmpX, lo, hi - lo);
+		System.arraycopy(ys, lo, tmpY, lo, hi - lo);
+		int i = lo, j = mid;
+		for (int k = lo; k < hi; k++) {
+			if (j >= hi || (i < mid && !before(tmpX[j], tmpY[j], tmpX[i], tmpY[i]))) {
+				xs[k] = tmpX[i];
+				ys[k] = tmpY[i];
+				i++;
+			} else {
+				xs[k] = tmpX[j];
+				ys[k] = tmpY[j];
+				j++;
+			}
 		}
 	}
 
@@ -84,9 +214,14 @@ public class Curve {
 	 */
 	public void write(String filename) {
 		try {
-			PrintWriter pw = new PrintWriter(new FileWriter(filename));
-			write(pw);
-			pw.close();
+			Stats.Phase phase = Stats.begin("writeCurveFile");
+			CurveWriter out = new CurveWriter(filename);
+			try {
+				write(out);
+			} finally {
+				out.close();
+			}
+			phase.end(size());
 		}
 		catch (IOException eIO) {
 			eIO.printStackTrace();
@@ -99,10 +234,11 @@ public class Curve {
 	 * @throws IOException 
 	 */
 	public void write(PrintWriter pw) throws IOException {
-		if (points.size()>0) {	    
+		compact();
+		if (count>0) {	    
 			// write points
-			for (Point p : points) {
-				pw.println(p.getX() + "\t" + p.getY());
+			for (int i=0;i<count;i++) {
+				pw.println(xs[i] + "\t" + ys[i]);
 			}	    
 		}
 		else {
@@ -110,6 +246,25 @@ public class Curve {
 		}
 	}
 
+	/**
+	 * Write the points defining this curve in x<tab>y<newline> format,
+	 * exactly as write(PrintWriter) does but without a String per point
+	 * @param out writer to write
+	 * @throws IOException if the file cannot be written
+	 */
+	void write(CurveWriter out) throws IOException {
+		compact();
+		if (count==0) {
+			throw new RuntimeException("Cannot write a curve with no points");
+		}
+		for (int i=0;i<count;i++) {
+			out.write(xs[i]);
+			out.write('\t');
+			out.write(ys[i]);
+			out.newLine();
+		}
+	}
+
 
 	/**
 	 * Returns y-value at a specified x-value using
@@ -118,27 +273,9 @@ public class Curve {
 	 * @return y value
 	 */
 	public double getY(double x) {
-		if (points.size()>0) {
-			Point test = new Point(x,0.0);
-			Point before = points.lower(test);
-			Point after = points.ceiling(test);
-			// check if exact match
-			if (after!=null && Math.abs(after.getX()-x)<=Point.EPSILON) {
-				// returns smallest if sorted asc
-				// and largest if sorted desc ... I think that's ok
-				return after.getY();
-			}
-			else if (before!=null && Math.abs(before.getX()-x)<=Point.EPSILON) {
-				return before.getY();
-			}
-			else {
-				// interpolate
-				if (before==null) before = new Point(0.0,points.first().getY());
-				if (after==null) after = new Point(1.0,points.last().getY());
-				double slope = (after.getY()-before.getY())/
-				(after.getX()-before.getX());
-				return before.getY() + (x-before.getX())*slope;		
-			}
+		compact();
+		if (count>0) {
+			return getY(x, seek(x, 0));
 		}
 		else {
 			throw new RuntimeException("Cannot obtain a y-value for a curve with no points");
@@ -146,6 +283,70 @@ public class Curve {
 
 	}
 
+	/**
+	 * Finds the first point with x value at least x-EPSILON, looking
+	 * no earlier than from.  Gallops forward from from before a binary
+	 * search, so a cursor advanced through increasing x values costs
+	 * little whether the curve is sparse or dense.
+	 * @param x x value
+	 * @param from index of the first point to consider
+	 * @return index of the first such point, or size() if none
+	 */
+	int seek(double x, int from) {
+		double min = x - Point.EPSILON;
+		int lo = from, step = 1;
+		int hi = from;
+		// gallop to a point past min
+		while (hi < count && xs[hi] < min) {
+			lo = hi + 1;
+			hi = Math.min(count, hi + step);
+			step <<= 1;
+		}
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (xs[mid] < min) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns y-value at a specified x-value given the index found by
+	 * seek(x, ...).  The curve must be compacted and non-empty.
+	 * @param x x value
+	 * @param lo first point with x value at least x-EPSILON
+	 * @return y value
+	 */
+	double getY(double x, int lo) {
+		// check if exact match
+		if (lo < count && xs[lo] <= x + Point.EPSILON) {
+			// smallest y-value of the matching points
+			double y = ys[lo];
+			for (int i = lo + 1; i < count && xs[i] <= x + Point.EPSILON; i++) {
+				y = Math.min(y, ys[i]);
+			}
+			return y;
+		}
+		else {
+			// interpolate
+			double beforeX = 0.0, beforeY = ys[0];
+			double afterX = 1.0, afterY = ys[count-1];
+			if (lo > 0) {
+				beforeX = xs[lo-1];
+				beforeY = ys[lo-1];
+			}
+			if (lo < count) {
+				afterX = xs[lo];
+				afterY = ys[lo];
+			}
+			double slope = (afterY-beforeY)/(afterX-beforeX);
+			return beforeY + (x-beforeX)*slope;		
+		}
+	}
+
 	/**
 	 * Returns area under curve from 0.0-1.0
 	 * @return area
@@ -161,53 +362,49 @@ public class Curve {
 	 * @return area
 	 */
 	public double getArea(double minX) {
-		if (points.size()>0) {	    
+		compact();
+		if (count>0) {	    
 			// find area
 			double area = 0.0;
 			// start at x=0.0
-			Point prev = new Point(0.0,points.first().getY());
-			Iterator<Point> itr = points.iterator();
-			//	    for (Point p : points) {
-			while (itr.hasNext()) {
-				Point p = itr.next();
-				if (p.getX()>=minX && prev!=null) {
-					// NOTE - if prev==null i's be first point which has
-					//        x=0.0 so don't need to calculate a
-					//        previous trapezoid
-
+			double prevX = 0.0, prevY = ys[0];
+			for (int i=0;i<count;i++) {
+				double x = xs[i], y = ys[i];
+				if (x>=minX) {
 					// include in area
-					if (prev.getX()<minX) {
+					if (prevX<minX) {
 						// partial trapezoid
 
 						// find y value of line at x=minX
-						double slope = (p.getY()-prev.getY())/(p.getX()-prev.getX());			
-						double y = prev.getY() + slope*(minX-prev.getX());
+						double slope = (y-prevY)/(x-prevX);
+						double yMin = prevY + slope*(minX-prevX);
 
-						area += 0.5 * (p.getX() - minX) * (p.getY() + y);
+						area += 0.5 * (x - minX) * (y + yMin);
 					}
 					else {
 						// full trapezoid
-						area += 0.5*(p.getX()-prev.getX())*(p.getY()+prev.getY());
+						area += 0.5*(x-prevX)*(y+prevY);
 					}
 				}
-				prev = p;
+				prevX = x;
+				prevY = y;
 			}
 			// get any last bit before 1.0
-			Point p = new Point(1.0,points.last().getY());
-			if (p.getX()>=minX && prev!=null) {		
+			double x = 1.0, y = ys[count-1];
+			if (x>=minX) {		
 				// include in area
-				if (prev.getX()<minX) {
+				if (prevX<minX) {
 					// partial trapezoid
 
 					// find y value of line at x=minX
-					double slope = (p.getY()-prev.getY())/(p.getX()-prev.getX());			
-					double y = prev.getY() + slope*(minX-p.getX());
+					double slope = (y-prevY)/(x-prevX);
+					double yMin = prevY + slope*(minX-x);
 
-					area += 0.5 * (p.getX() - minX) * (p.getY() + y);
+					area += 0.5 * (x - minX) * (y + yMin);
 				}
 				else {
 					// full trapezoid
-					area += 0.5*(p.getX()-prev.getX())*(p.getY()+prev.getY());
+					area += 0.5*(x-prevX)*(y+prevY);
 				}
 			}
 
@@ -226,9 +423,161 @@ public class Curve {
 	public Curve createStandardized(int num) {
 		Curve ret = new Curve(sortAsc);
 
+		// the samples increase, so the cursor only moves forward
+		compact();
+		int lo = 0;
 		for (int i=0;i<=num;i++) {
 			double x = (1.0*i)/num;
-			ret.add(x,getY(x));
+			if (count>0) {
+				lo = seek(x, lo);
+				ret.add(x,getY(x, lo));
+			}
+			else {
+				ret.add(x,getY(x));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Create a simplified curve from some of the points of this curve,
+	 * such that every point of this curve is within maxError
+	 * vertically of the lines between the points kept.  One streaming
+	 * pass keeps the range of slopes from the last point kept that
+	 * stay within maxError of every point since, and keeps the
+	 * previous point once the range no longer allows the next one.
+	 * Points at the same x as the last point kept lie on a vertical
+	 * step from it, and one more than maxError away from it is kept.
+	 * The first and last points are always kept.
+	 * @param maxError largest vertical distance of a point from the
+	 *        simplified curve
+	 * @return simplified curve
+	 */
+	public Curve simplify(double maxError) {
+		compact();
+		Curve ret = new Curve(sortAsc);
+		if (count==0) {
+			return ret;
+		}
+		ret.append(xs[0], ys[0]);
+		int anchor = 0;
+		double lo = Double.NEGATIVE_INFINITY, hi = Double.POSITIVE_INFINITY;
+		for (int k=1;k<count;k++) {
+			double dx = xs[k]-xs[anchor];
+			if (dx!=0) {
+				double slope = (ys[k]-ys[anchor])/dx;
+				if (slope>=lo && slope<=hi) {
+					// k can end the line, narrow the range by it
+					lo = Math.max(lo, (ys[k]-maxError-ys[anchor])/dx);
+					hi = Math.min(hi, (ys[k]+maxError-ys[anchor])/dx);
+					continue;
+				}
+				// end the line at the previous point, which could
+				// end it, and start again from there
+				if (k-1!=anchor) {
+					anchor = k-1;
+					ret.append(xs[anchor], ys[anchor]);
+					dx = xs[k]-xs[anchor];
+				}
+			}
+			if (dx!=0) {
+				lo = (ys[k]-maxError-ys[anchor])/dx;
+				hi = (ys[k]+maxError-ys[anchor])/dx;
+			}
+			else if (Math.abs(ys[k]-ys[anchor])>maxError) {
+				// keep the vertical step
+				anchor = k;
+				ret.append(xs[k], ys[k]);
+				lo = Double.NEGATIVE_INFINITY;
+				hi = Double.POSITIVE_INFINITY;
+			}
+		}
+		if (anchor!=count-1) {
+			ret.append(xs[count-1], ys[count-1]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Create a simplified curve of at most maxPoints points, with the
+	 * smallest vertical error simplify(double) reaches in that many,
+	 * found by bisecting the error.  Vertical steps more than the
+	 * height of the curve are always kept, so a curve with more of
+	 * them than maxPoints gives more points.
+	 * @param maxPoints most points to keep, at least 2
+	 * @return simplified curve
+	 */
+	public Curve simplify(int maxPoints) {
+		compact();
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i=0;i<count;i++) {
+			minY = Math.min(minY, ys[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		double lo = 0.0, hi = count>0 ? maxY-minY+1.0 : 1.0;
+		Curve best = simplify(lo);
+		if (best.count<=maxPoints) {
+			return best;
+		}
+		best = simplify(hi);
+		if (best.count>maxPoints) {
+			// only vertical steps are left
+			return best;
+		}
+		for (int i=0;i<50;i++) {
+			double mid = 0.5*(lo+hi);
+			Curve ret = simplify(mid);
+			if (ret.count<=maxPoints) {
+				best = ret;
+				hi = mid;
+			}
+			else {
+				lo = mid;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Appends a point known to come after every point of the curve,
+	 * keeping the curve compacted
+	 */
+	private void append(double x, double y) {
+		if (count == xs.length) {
+			int cap = xs.length + (xs.length >> 1) + 1;
+			xs = Arrays.copyOf(xs, cap);
+			ys = Arrays.copyOf(ys, cap);
+		}
+		xs[count] = x;
+		ys[count] = y;
+		count++;
+	}
+
+	/**
+	 * Simplifies a curve to be written, to at most maxPoints points if
+	 * maxPoints is positive or else to a vertical error of maxError if
+	 * it is positive, and logs how many points were kept and how much
+	 * the area changed at the INFO level
+	 * @param name name of the curve, such as PR
+	 * @param maxPoints most points to keep, or 0
+	 * @param maxError largest vertical error, or 0
+	 * @return simplified curve, or this curve if neither is positive
+	 */
+	Curve simplify(String name, int maxPoints, double maxError) {
+		Curve ret;
+		if (maxPoints>0) {
+			ret = simplify(maxPoints);
+		}
+		else if (maxError>0) {
+			ret = simplify(maxError);
+		}
+		else {
+			return this;
+		}
+		if (Log.isInfo()) {
+			Log.info("Simplified " + name + " curve from " + size()
+					+ " to " + ret.size() + " points, changing its area by "
+					+ (ret.getArea() - getArea()));
 		}
 		return ret;
 	}
@@ -252,19 +601,11 @@ public class Curve {
 	 * @param num number of sample points (really will use num+1)
 	 * @return new curve object representing the average at each
 	 * sample point
+	 * @see CurveAverage
 	 */
 	public static Curve createVerticalAverage(ArrayList<Curve> curves,
 			int num) {
-		Curve curve = new Curve(curves.get(0).sortAsc);
-		for (int i=0;i<=num;i++) {
-			double x = (1.0*i)/num;
-			double total = 0.0;
-			for (Curve c : curves) {
-				total += c.getY(x);
-			}
-			curve.add(x,total/curves.size());
-		}
-		return curve;
+		return new CurveAverage(curves, num).getMeanCurve();
 	}
 
 	/**
@@ -0,0 +1,311 @@
+package auc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * CurveAverage finds the vertical average of a list of curves at num+1
+ * evenly spaced x-values, together with the standard deviation and any
+ * requested percentiles of the y-values at each x-value.  Each curve is
+ * swept once with a cursor instead of searched for every sample point,
+ * since the sample x-values are increasing.  For large inputs the
+ * sample points are split into ranges handled in parallel; the
+ * y-values at each sample point are always summed in curve order, so
+ * the mean is the same as Curve.createVerticalAverage computed with
+ * getY.
+ */
+public class CurveAverage {
+	/**
+	 * Curves times sample points needed before using more than one
+	 * thread by default
+	 */
+	private static final int PARALLEL_MIN = 1 << 16;
+
+	/**
+	 * Number of sample points whose y-values are gathered at once
+	 */
+	private static final int BLOCK = 64;
+
+	/**
+	 * Number of sample points is num+1
+	 */
+	private final int num;
+
+	/**
+	 * How to sort same x-values in the curves that are created
+	 */
+	private final boolean sortAsc;
+
+	/**
+	 * Percentiles found at each sample point, from 0 to 100
+	 */
+	private final double[] percentiles;
+
+	/**
+	 * Mean y-value at each sample point
+	 */
+	private final double[] mean;
+
+	/**
+	 * Standard deviation of the y-values at each sample point
+	 */
+	private final double[] stdDev;
+
+	/**
+	 * Percentile y-values, indexed by percentile and then sample point
+	 */
+	private final double[][] percentileYs;
+
+	/**
+	 * Constructor for the mean and standard deviation only
+	 * @param curves list of curves to average
+	 * @param num number of sample points (really will use num+1)
+	 */
+	public CurveAverage(List<Curve> curves, int num) {
+		this(curves, num, new double[0]);
+	}
+
+	/**
+	 * Constructor using all cores for large inputs
+	 * @param curves list of curves to average
+	 * @param num number of sample points (really will use num+1)
+	 * @param percentiles percentiles to find at each sample point,
+	 *        from 0 to 100
+	 */
+	public CurveAverage(List<Curve> curves, int num, double[] percentiles) {
+		this(curves, num, percentiles,
+				(long)curves.size() * (num + 1) < PARALLEL_MIN
+				? 1 : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 * @param curves list of curves to average
+	 * @param num number of sample points (really will use num+1)
+	 * @param percentiles percentiles to find at each sample point,
+	 *        from 0 to 100
+	 * @param threads number of threads to use
+	 */
+	public CurveAverage(List<Curve> curves, int num, double[] percentiles,
+			int threads) {
+		for (double p : percentiles) {
+			if (!(p >= 0.0 && p <= 100.0)) {
+				throw new IllegalArgumentException("Percentile " + p
+						+ " is not between 0 and 100");
+			}
+		}
+		this.num = num;
+		this.sortAsc = curves.get(0).isSortAsc();
+		this.percentiles = percentiles.clone();
+		mean = new double[num+1];
+		stdDev = new double[num+1];
+		percentileYs = new double[percentiles.length][num+1];
+
+		final Curve[] array = curves.toArray(new Curve[curves.size()]);
+		for (Curve c : array) {
+			// sort each curve before it is shared between threads
+			if (c.size() == 0) {
+				throw new RuntimeException("Cannot obtain a y-value for a curve with no points");
+			}
+		}
+
+		threads = Math.max(1, Math.min(threads, num + 1));
+		if (threads == 1) {
+			sweep(array, 0, num + 1);
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			int step = (num + threads) / threads;
+			ArrayList<Future<?>> parts = new ArrayList<Future<?>>();
+			for (int from = 0; from <= num; from += step) {
+				final int lo = from;
+				final int hi = Math.min(num + 1, from + step);
+				parts.add(pool.submit(new Runnable() {
+					public void run() {
+						sweep(array, lo, hi);
+					}
+				}));
+			}
+			for (Future<?> f : parts) {
+				try {
+					f.get();
+				}
+				catch (InterruptedException eInt) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(eInt);
+				}
+				catch (ExecutionException eExec) {
+					if (eExec.getCause() instanceof RuntimeException) {
+						throw (RuntimeException)eExec.getCause();
+					}
+					throw new RuntimeException(eExec.getCause());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Finds the statistics of sample points [from,to).  Each curve
+	 * keeps a cursor that only moves forward, and the y-values of a
+	 * block of sample points are gathered before they are summarized.
+	 * @param curves curves to average
+	 * @param from first sample point
+	 * @param to one past the last sample point
+	 */
+	private void sweep(Curve[] curves, int from, int to) {
+		int n = curves.length;
+		int[] cursors = new int[n];
+		double[] block = new double[Math.min(BLOCK, to - from) * n];
+		for (int b0 = from; b0 < to; b0 += BLOCK) {
+			int b1 = Math.min(to, b0 + BLOCK);
+			for (int c = 0; c < n; c++) {
+				Curve curve = curves[c];
+				int lo = cursors[c];
+				for (int i = b0; i < b1; i++) {
+					double x = getX(i);
+					lo = curve.seek(x, lo);
+					block[(i-b0)*n + c] = curve.getY(x, lo);
+				}
+				cursors[c] = lo;
+			}
+			for (int i = b0; i < b1; i++) {
+				summarize(block, (i-b0)*n, n, i);
+			}
+		}
+	}
+
+	/**
+	 * Computes the statistics of one sample point
+	 * @param ys y-values of the curves, reordered by this method
+	 * @param off index of the first y-value
+	 * @param n number of curves
+	 * @param i sample point
+	 */
+	private void summarize(double[] ys, int off, int n, int i) {
+		double total = 0.0;
+		for (int c = 0; c < n; c++) {
+			total += ys[off+c];
+		}
+		double m = total/n;
+		mean[i] = m;
+
+		if (n > 1) {
+			double squares = 0.0;
+			for (int c = 0; c < n; c++) {
+				double d = ys[off+c] - m;
+				squares += d*d;
+			}
+			stdDev[i] = Math.sqrt(squares/(n-1));
+		}
+
+		if (percentiles.length > 0) {
+			Arrays.sort(ys, off, off + n);
+			for (int j = 0; j < percentiles.length; j++) {
+				percentileYs[j][i] = percentile(ys, off, n, percentiles[j]);
+			}
+		}
+	}
+
+	/**
+	 * Percentile of sorted values, interpolating linearly between the
+	 * closest ranks
+	 * @param sorted values sorted ascending
+	 * @param off index of the first value
+	 * @param n number of values, at least 1
+	 * @param p percentile from 0 to 100
+	 * @return percentile value
+	 */
+	static double percentile(double[] sorted, int off, int n, double p) {
+		double rank = p/100.0 * (n-1);
+		int r = (int)Math.floor(rank);
+		double y = sorted[off+r];
+		if (r < n-1) {
+			y += (rank - r) * (sorted[off+r+1] - y);
+		}
+		return y;
+	}
+
+	/**
+	 * Number of sample points is num+1
+	 * @return num
+	 */
+	public int getNum() {
+		return num;
+	}
+
+	/**
+	 * x-value of a sample point
+	 * @param i sample point, from 0 to num
+	 * @return x value
+	 */
+	public double getX(int i) {
+		return (1.0*i)/num;
+	}
+
+	/**
+	 * Mean y-value at a sample point
+	 * @param i sample point, from 0 to num
+	 * @return mean y-value
+	 */
+	public double getMean(int i) {
+		return mean[i];
+	}
+
+	/**
+	 * Sample standard deviation of the y-values at a sample point, 0
+	 * for a single curve
+	 * @param i sample point, from 0 to num
+	 * @return standard deviation
+	 */
+	public double getStdDev(int i) {
+		return stdDev[i];
+	}
+
+	/**
+	 * Percentile of the y-values at a sample point
+	 * @param j index of the percentile in the list given to the
+	 *        constructor
+	 * @param i sample point, from 0 to num
+	 * @return percentile y-value
+	 */
+	public double getPercentile(int j, int i) {
+		return percentileYs[j][i];
+	}
+
+	/**
+	 * Creates the curve of mean y-values
+	 * @return new curve object representing the average at each
+	 * sample point
+	 */
+	public Curve getMeanCurve() {
+		return createCurve(mean);
+	}
+
+	/**
+	 * Creates the curve of one percentile of the y-values
+	 * @param j index of the percentile in the list given to the
+	 *        constructor
+	 * @return new curve object representing the percentile at each
+	 * sample point
+	 */
+	public Curve getPercentileCurve(int j) {
+		return createCurve(percentileYs[j]);
+	}
+
+	/**
+	 * Creates a curve through the sample points
+	 * @param ys y-value of each sample point
+	 * @return Curve object
+	 */
+	private Curve createCurve(double[] ys) {
+		Curve curve = new Curve(sortAsc);
+		for (int i = 0; i <= num; i++) {
+			curve.add(getX(i), ys[i]);
+		}
+		return curve;
+	}
+}
@@ -0,0 +1,204 @@
+package auc;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+
+/**
+ * Writes numbers to a file through a large byte buffer, with no String
+ * created per number.  Doubles are written exactly as Double.toString
+ * writes them, or exactly as String.format("%.10f") and the like write
+ * them, by rounding the same decimal digits half up.  Digits are
+ * formatted into a StringBuilder that is reused for every number.
+ */
+public class CurveWriter implements Closeable {
+	/**
+	 * Size of the byte buffer
+	 */
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Bytes of the platform line separator, as written by println
+	 */
+	private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+
+	private final OutputStream out;
+	private final byte[] buf = new byte[BUFFER];
+	private int pos = 0;
+
+	/**
+	 * Reused for the digits of each double
+	 */
+	private final StringBuilder digits = new StringBuilder(32);
+
+	/**
+	 * Decimal separator of fixed point numbers in the default locale,
+	 * or 0 if the locale does not use ASCII digits and separator and
+	 * String.format has to be used
+	 */
+	private final char point;
+
+	/**
+	 * Constructor
+	 * @param fileName file to write
+	 * @throws IOException if the file cannot be created
+	 */
+	public CurveWriter(String fileName) throws IOException {
+		out = new FileOutputStream(fileName);
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(
+				Locale.getDefault(Locale.Category.FORMAT));
+		char sep = symbols.getDecimalSeparator();
+		point = symbols.getZeroDigit() == '0' && sep < 0x80 ? sep : 0;
+	}
+
+	/**
+	 * Writes a character, which must be ASCII
+	 * @param c character to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(char c) throws IOException {
+		if (pos == BUFFER) {
+			flush();
+		}
+		buf[pos++] = (byte)c;
+	}
+
+	/**
+	 * Writes the platform line separator
+	 * @throws IOException if the file cannot be written
+	 */
+	public void newLine() throws IOException {
+		for (int i = 0; i < NEWLINE.length; i++) {
+			write((char)NEWLINE[i]);
+		}
+	}
+
+	/**
+	 * Writes a double as Double.toString does
+	 * @param d value to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(double d) throws IOException {
+		digits.setLength(0);
+		digits.append(d);
+		writeChars(digits, 0, digits.length());
+	}
+
+	/**
+	 * Writes a double with a fixed number of decimals, as
+	 * String.format("%.Nf") does in the default locale
+	 * @param d value to write
+	 * @param decimals number of digits after the decimal separator
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeFixed(double d, int decimals) throws IOException {
+		if (Double.isNaN(d) || Double.isInfinite(d) || point == 0) {
+			// encoded as a FileWriter would encode it
+			byte[] b = String.format("%." + decimals + "f", d)
+				.getBytes(Charset.defaultCharset());
+			for (int i = 0; i < b.length; i++) {
+				write((char)(b[i] & 0xFF));
+			}
+			return;
+		}
+		digits.setLength(0);
+		digits.append(d);
+		int start = 0;
+		if (digits.charAt(0) == '-') {
+			write('-');
+			start = 1;
+		}
+
+		// gather the digits without the point, and the number of them
+		// before the point, from d.ddd or d.dddE[-]n
+		int end = digits.length();
+		int e = digits.indexOf("E");
+		int exp = 0;
+		if (e >= 0) {
+			exp = Integer.parseInt(digits.substring(e + 1));
+			end = e;
+		}
+		int dot = digits.indexOf(".");
+		int intDigits = dot - start + exp;
+		digits.deleteCharAt(dot);
+		end--;
+		while (start < end && digits.charAt(start) == '0') {
+			start++;
+			intDigits--;
+		}
+
+		// round half up to the digits kept, as Formatter does
+		int keep = intDigits + decimals;
+		if (keep < end - start) {
+			if (keep < 0) {
+				end = start;
+			} else {
+				boolean up = digits.charAt(start + keep) >= '5';
+				end = start + keep;
+				if (up) {
+					int i = end - 1;
+					while (i >= start && digits.charAt(i) == '9') {
+						digits.setCharAt(i, '0');
+						i--;
+					}
+					if (i >= start) {
+						digits.setCharAt(i, (char)(digits.charAt(i) + 1));
+					} else {
+						// carried out of the first digit
+						digits.insert(start, '1');
+						end++;
+						intDigits++;
+					}
+				}
+			}
+		}
+
+		if (intDigits <= 0) {
+			write('0');
+		}
+		for (int i = 0; i < intDigits; i++) {
+			write(start + i < end ? digits.charAt(start + i) : '0');
+		}
+		if (decimals > 0) {
+			write(point);
+			for (int i = intDigits; i < intDigits + decimals; i++) {
+				write(i >= 0 && start + i < end ? digits.charAt(start + i) : '0');
+			}
+		}
+	}
+
+	/**
+	 * Writes ASCII characters
+	 */
+	private void writeChars(CharSequence s, int from, int to) throws IOException {
+		if (BUFFER - pos < to - from) {
+			flush();
+		}
+		for (int i = from; i < to; i++) {
+			buf[pos++] = (byte)s.charAt(i);
+		}
+	}
+
+	/**
+	 * Writes out the buffer
+	 * @throws IOException if the file cannot be written
+	 */
+	public void flush() throws IOException {
+		out.write(buf, 0, pos);
+		pos = 0;
+	}
+
+	/**
+	 * Writes out the buffer and closes the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+}
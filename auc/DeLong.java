@@ -0,0 +1,221 @@
+package auc;
+
+
+/**
+ * DeLong's estimate of the variance and covariance of the AUC-ROC of
+ * several models scored on the same examples, with a paired test of
+ * whether two models have the same AUC-ROC.  Uses the fast midrank
+ * algorithm of Sun and Xu (2014): after sorting each model's scores
+ * once, the placement value of every example comes from the counts of
+ * the other class below and tied with it, so no positive by negative
+ * placement matrix is ever built and the time is O(n log n).  Ties are
+ * exact equality of the scores, counted as half, and the examples are
+ * unweighted.
+ */
+public class DeLong {
+	/**
+	 * Number of positive examples
+	 */
+	private final int m;
+
+	/**
+	 * Number of negative examples
+	 */
+	private final int n;
+
+	/**
+	 * AUC-ROC of each model
+	 */
+	private final double[] auc;
+
+	/**
+	 * Covariance of the AUC-ROC of each pair of models
+	 */
+	private final double[][] cov;
+
+	/**
+	 * Constructor
+	 * @param models examples of each model, listing the same examples
+	 *        in the same order with only the probabilities differing
+	 */
+	public DeLong(ExampleList... models) {
+		int size = models[0].size();
+		int pos = 0;
+		for (int i = 0; i < size; i++) {
+			pos += models[0].getClassification(i);
+		}
+		for (int k = 1; k < models.length; k++) {
+			if (models[k].size() != size) {
+				throw new IllegalArgumentException("Model " + (k+1) + " has "
+						+ models[k].size() + " examples instead of " + size);
+			}
+			for (int i = 0; i < size; i++) {
+				if (models[k].getClassification(i) != models[0].getClassification(i)) {
+					throw new IllegalArgumentException("Model " + (k+1)
+							+ " has a different outcome for example " + (i+1));
+				}
+			}
+		}
+		m = pos;
+		n = size - pos;
+
+		// placement value of each example for each model
+		int count = models.length;
+		double[][] v = new double[count][];
+		auc = new double[count];
+		for (int k = 0; k < count; k++) {
+			v[k] = placements(models[k]);
+			double total = 0;
+			for (int i = 0; i < size; i++) {
+				if (models[0].getClassification(i) == 1) {
+					total += v[k][i];
+				}
+			}
+			auc[k] = total / m;
+		}
+
+		// covariance of the placements of positives and of negatives
+		double[][] s10 = new double[count][count];
+		double[][] s01 = new double[count][count];
+		double[] d = new double[count];
+		for (int i = 0; i < size; i++) {
+			boolean positive = models[0].getClassification(i) == 1;
+			for (int k = 0; k < count; k++) {
+				d[k] = v[k][i] - auc[k];
+			}
+			double[][] s = positive ? s10 : s01;
+			for (int k = 0; k < count; k++) {
+				for (int l = k; l < count; l++) {
+					s[k][l] += d[k] * d[l];
+				}
+			}
+		}
+		cov = new double[count][count];
+		for (int k = 0; k < count; k++) {
+			for (int l = k; l < count; l++) {
+				cov[k][l] = s10[k][l] / ((double)(m-1) * m)
+					+ s01[k][l] / ((double)(n-1) * n);
+				cov[l][k] = cov[k][l];
+			}
+		}
+	}
+
+	/**
+	 * Finds the placement value of every example in one sweep up the
+	 * sorted scores.  For a positive it is the fraction of negatives
+	 * scored below it, for a negative the fraction of positives scored
+	 * above it, with ties counting half.
+	 * @param list examples of one model
+	 * @return placement value of each example, in list order
+	 */
+	private double[] placements(ExampleList list) {
+		int size = list.size();
+		int[] order = list.sortedOrder();
+		double[] v = new double[size];
+		int posBelow = 0, negBelow = 0;
+		int start = 0;
+		while (start < size) {
+			// group of exactly tied scores
+			double prob = list.getProb(order[start]);
+			int end = start;
+			int posTied = 0;
+			while (end < size && list.getProb(order[end]) == prob) {
+				posTied += list.getClassification(order[end]);
+				end++;
+			}
+			int negTied = end - start - posTied;
+			double posValue = (negBelow + 0.5 * negTied) / n;
+			double negValue = (m - posBelow - posTied + 0.5 * posTied) / m;
+			for (int j = start; j < end; j++) {
+				int i = order[j];
+				v[i] = list.getClassification(i) == 1 ? posValue : negValue;
+			}
+			posBelow += posTied;
+			negBelow += negTied;
+			start = end;
+		}
+		return v;
+	}
+
+	/**
+	 * Number of models
+	 * @return number of models
+	 */
+	public int getModels() {
+		return auc.length;
+	}
+
+	/**
+	 * AUC-ROC of a model, the Mann-Whitney statistic of its scores
+	 * @param k index of the model
+	 * @return AUC-ROC
+	 */
+	public double getAUC(int k) {
+		return auc[k];
+	}
+
+	/**
+	 * DeLong variance of the AUC-ROC of a model
+	 * @param k index of the model
+	 * @return variance, NaN with fewer than 2 positives or negatives
+	 */
+	public double getVariance(int k) {
+		return cov[k][k];
+	}
+
+	/**
+	 * DeLong covariance of the AUC-ROC of two models
+	 * @param k index of a model
+	 * @param l index of the other model
+	 * @return covariance
+	 */
+	public double getCovariance(int k, int l) {
+		return cov[k][l];
+	}
+
+	/**
+	 * Statistic of the paired test that two models have the same
+	 * AUC-ROC, standard normal if they do
+	 * @param k index of a model
+	 * @param l index of the other model
+	 * @return z statistic
+	 */
+	public double getZ(int k, int l) {
+		double var = cov[k][k] + cov[l][l] - 2 * cov[k][l];
+		return (auc[k] - auc[l]) / Math.sqrt(var);
+	}
+
+	/**
+	 * Two sided p-value of the paired test that two models have the
+	 * same AUC-ROC
+	 * @param k index of a model
+	 * @param l index of the other model
+	 * @return p-value, 1.0 for models ranking every example alike
+	 */
+	public double getPValue(int k, int l) {
+		double var = cov[k][k] + cov[l][l] - 2 * cov[k][l];
+		if (Double.isNaN(var)) {
+			return Double.NaN;
+		}
+		if (!(var > 0.0)) {
+			return auc[k] == auc[l] ? 1.0 : 0.0;
+		}
+		return erfc(Math.abs(auc[k] - auc[l]) / Math.sqrt(2 * var));
+	}
+
+	/**
+	 * Complementary error function, with a fractional error below
+	 * 1.2e-7 (Numerical Recipes erfcc)
+	 * @param x argument
+	 * @return erfc(x)
+	 */
+	static double erfc(double x) {
+		double z = Math.abs(x);
+		double t = 1.0 / (1.0 + 0.5 * z);
+		double ans = t * Math.exp(-z*z - 1.26551223 + t*(1.00002368
+				+ t*(0.37409196 + t*(0.09678418 + t*(-0.18628806
+				+ t*(0.27886807 + t*(-1.13520398 + t*(1.48851587
+				+ t*(-0.82215223 + t*0.17087277)))))))));
+		return x >= 0 ? ans : 2.0 - ans;
+	}
+}
@@ -0,0 +1,351 @@
+package auc;
+
+import java.util.*;
+
+
+/**
+ * ExampleList stores probability values, classifications and example
+ * weights in primitive columns, the same data as a list of ClassSort
+ * objects without an object per example.
+ */
+public class ExampleList implements ExampleSink {
+	/**
+	 * Probability of each example, only the first size entries are used
+	 */
+	private double[] probs;
+
+	/**
+	 * Classification of each example, 1 for positive and 0 for negative
+	 */
+	private byte[] classes;
+
+	/**
+	 * Weight of each example
+	 */
+	private double[] weights;
+
+	/**
+	 * Number of examples stored
+	 */
+	private int size = 0;
+
+	/**
+	 * True if the examples are known to be sorted, so sort() has
+	 * nothing to do
+	 */
+	private boolean sorted = false;
+
+	/**
+	 * Constructor for an empty list
+	 */
+	public ExampleList() {
+		this(16);
+	}
+
+	/**
+	 * Constructor for an empty list with room for capacity examples
+	 * @param capacity initial number of examples that can be stored
+	 */
+	public ExampleList(int capacity) {
+		capacity = Math.max(capacity, 1);
+		probs = new double[capacity];
+		classes = new byte[capacity];
+		weights = new double[capacity];
+	}
+
+	/**
+	 * Constructor copying a list of ClassSort objects
+	 * @param list examples to copy, in order
+	 */
+	public ExampleList(Collection<ClassSort> list) {
+		this(list.size());
+		for (ClassSort c : list) {
+			add(c.getProb(), c.getClassification(), c.getWeight());
+		}
+	}
+
+	/**
+	 * Constructor taking over columns that were filled elsewhere, such
+	 * as from a binary list file
+	 * @param probs probability of each example
+	 * @param classes classification of each example
+	 * @param weights weight of each example
+	 * @param size number of examples in the columns
+	 * @param sorted true if the examples are already sorted
+	 */
+	ExampleList(double[] probs, byte[] classes, double[] weights, int size,
+			boolean sorted) {
+		this.probs = probs;
+		this.classes = classes;
+		this.weights = weights;
+		this.size = size;
+		this.sorted = sorted;
+	}
+
+	/**
+	 * Constructor for a list sharing the probabilities and
+	 * classifications of another with different weights
+	 */
+	private ExampleList(ExampleList list, double[] weights) {
+		probs = list.probs;
+		classes = list.classes;
+		this.weights = weights;
+		size = list.size;
+		sorted = list.sorted;
+	}
+
+	/**
+	 * Creates a view of these examples with different weights, without
+	 * copying the probabilities and classifications.  Neither list may
+	 * be added to or sorted while the view is in use, unless it is
+	 * already sorted.
+	 * @param weights weight of each example, at least size() entries
+	 * @return list of the same examples with the given weights
+	 */
+	ExampleList reweight(double[] weights) {
+		return new ExampleList(this, weights);
+	}
+
+	/**
+	 * Adds an example to the end of the list
+	 * @param prob probability of the example
+	 * @param classification 1 for positive, 0 for negative
+	 * @param weight weight of the example
+	 */
+	public void add(double prob, int classification, double weight) {
+		ensureCapacity(size + 1);
+		probs[size] = prob;
+		classes[size] = (byte)classification;
+		weights[size] = weight;
+		size++;
+		sorted = false;
+	}
+
+	/**
+	 * Adds all examples of other to the end of the list
+	 * @param other examples to add
+	 */
+	public void addAll(ExampleList other) {
+		ensureCapacity(size + other.size);
+		System.arraycopy(other.probs, 0, probs, size, other.size);
+		System.arraycopy(other.classes, 0, classes, size, other.size);
+		System.arraycopy(other.weights, 0, weights, size, other.size);
+		size += other.size;
+		sorted = false;
+	}
+
+	/**
+	 * Number of examples in the list
+	 * @return number of examples
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Probability of an example
+	 * @param index index of the example
+	 * @return probability value
+	 */
+	public double getProb(int index) {
+		return probs[index];
+	}
+
+	/**
+	 * Classification of an example
+	 * @param index index of the example
+	 * @return 1 for positive, 0 for negative
+	 */
+	public int getClassification(int index) {
+		return classes[index];
+	}
+
+	/**
+	 * Weight of an example
+	 * @param index index of the example
+	 * @return weight
+	 */
+	public double getWeight(int index) {
+		return weights[index];
+	}
+
+	/**
+	 * Creates a ClassSort object for every example
+	 * @return list of ClassSort objects in the same order
+	 */
+	public ArrayList<ClassSort> toClassSortList() {
+		ArrayList<ClassSort> list = new ArrayList<ClassSort>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(new ClassSort(probs[i], classes[i], weights[i]));
+		}
+		return list;
+	}
+
+	/**
+	 * Checks if the examples are sorted as by ClassSort.compareTo, by
+	 * probability ascending and then by classification descending
+	 * @return true if sorted
+	 */
+	public boolean isSorted() {
+		return isSorted(probs, classes, size);
+	}
+
+	/**
+	 * Checks if columns are sorted as by ClassSort.compareTo.  The
+	 * probabilities are compared by sortKey, as sort orders them, so
+	 * a NaN out of place is not sorted.
+	 * @param probs probability of each example
+	 * @param classes classification of each example
+	 * @param n number of examples in the columns
+	 * @return true if sorted
+	 */
+	static boolean isSorted(double[] probs, byte[] classes, int n) {
+		long prev = n > 0 ? sortKey(probs[0]) : 0;
+		for (int i = 1; i < n; i++) {
+			long key = sortKey(probs[i]);
+			int c = Long.compareUnsigned(prev, key);
+			if (c > 0 || (c == 0 && classes[i-1] < classes[i])) {
+				return false;
+			}
+			prev = key;
+		}
+		return true;
+	}
+
+	/**
+	 * Sort by probability ascending and then by classification
+	 * descending, so positive examples are listed first among ties.
+	 * This is a stable LSD radix sort over the bits of the
+	 * probabilities, so examples end up in the same order as sorting
+	 * ClassSort objects with Collections.sort.
+	 */
+	public void sort() {
+		if (sorted || isSorted()) {
+			sorted = true;
+			return;
+		}
+
+		int[] idx = sortedOrder();
+		double[] sortedProbs = new double[probs.length];
+		byte[] sortedClasses = new byte[classes.length];
+		double[] sortedWeights = new double[weights.length];
+		for (int i = 0; i < size; i++) {
+			sortedProbs[i] = probs[idx[i]];
+			sortedClasses[i] = classes[idx[i]];
+			sortedWeights[i] = weights[idx[i]];
+		}
+		probs = sortedProbs;
+		classes = sortedClasses;
+		weights = sortedWeights;
+		sorted = true;
+	}
+
+	/**
+	 * Finds the order sort() would put the examples in, without moving
+	 * them
+	 * @return index of the example at each sorted position
+	 */
+	int[] sortedOrder() {
+		int n = size;
+		long[] keys = new long[n];
+		int[] idx = new int[n];
+
+		// least significant key is the classification, positives first
+		int nPos = 0;
+		for (int i = 0; i < n; i++) {
+			if (classes[i] > 0) {
+				nPos++;
+			}
+		}
+		int p = 0, q = nPos;
+		for (int i = 0; i < n; i++) {
+			int j = classes[i] > 0 ? p++ : q++;
+			idx[j] = i;
+			keys[j] = sortKey(probs[i]);
+		}
+
+		// then one counting pass for each byte of the probability
+		long[] tmpKeys = new long[n];
+		int[] tmpIdx = new int[n];
+		int[] counts = new int[256];
+		for (int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < n; i++) {
+				counts[(int)(keys[i] >>> shift) & 0xFF]++;
+			}
+			if (n == 0 || counts[(int)(keys[0] >>> shift) & 0xFF] == n) {
+				// every key has the same byte here
+				continue;
+			}
+			int total = 0;
+			for (int b = 0; b < 256; b++) {
+				int c = counts[b];
+				counts[b] = total;
+				total += c;
+			}
+			for (int i = 0; i < n; i++) {
+				int j = counts[(int)(keys[i] >>> shift) & 0xFF]++;
+				tmpKeys[j] = keys[i];
+				tmpIdx[j] = idx[i];
+			}
+			long[] swapKeys = keys;
+			keys = tmpKeys;
+			tmpKeys = swapKeys;
+			int[] swapIdx = idx;
+			idx = tmpIdx;
+			tmpIdx = swapIdx;
+		}
+		return idx;
+	}
+
+	/**
+	 * Merges two sorted lists into a new sorted list.  Among examples
+	 * that compare equal, those of a come first, so the result is
+	 * the same as sorting a followed by b.
+	 * @param a sorted examples
+	 * @param b sorted examples
+	 * @return new sorted list holding the examples of both
+	 */
+	public static ExampleList merge(ExampleList a, ExampleList b) {
+		ExampleList m = new ExampleList(a.size + b.size);
+		int i = 0, j = 0;
+		while (i < a.size || j < b.size) {
+			boolean takeB = i == a.size || (j < b.size
+					&& (b.probs[j] < a.probs[i]
+							|| (b.probs[j] == a.probs[i] && b.classes[j] > a.classes[i])));
+			if (takeB) {
+				m.add(b.probs[j], b.classes[j], b.weights[j]);
+				j++;
+			} else {
+				m.add(a.probs[i], a.classes[i], a.weights[i]);
+				i++;
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Maps a probability to a long whose unsigned order is the order
+	 * of the probabilities, treating -0.0 and 0.0 as equal
+	 * @param prob probability value
+	 * @return sort key
+	 */
+	static long sortKey(double prob) {
+		long bits = Double.doubleToLongBits(prob + 0.0);
+		// flip the sign bit of positives and every bit of negatives
+		return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+	}
+
+	/**
+	 * Grows the columns to hold at least min examples
+	 * @param min number of examples needed
+	 */
+	private void ensureCapacity(int min) {
+		if (min > probs.length) {
+			int cap = Math.max(min, probs.length + (probs.length >> 1) + 1);
+			probs = Arrays.copyOf(probs, cap);
+			classes = Arrays.copyOf(classes, cap);
+			weights = Arrays.copyOf(weights, cap);
+		}
+	}
+}
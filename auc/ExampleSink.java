@@ -0,0 +1,15 @@
+package auc;
+
+
+/**
+ * Receives examples, one at a time, as they are read from a list file.
+ */
+public interface ExampleSink {
+	/**
+	 * Adds an example
+	 * @param prob probability of the example
+	 * @param classification 1 for positive, 0 for negative
+	 * @param weight weight of the example
+	 */
+	public void add(double prob, int classification, double weight);
+}
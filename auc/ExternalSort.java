@@ -0,0 +1,271 @@
+package auc;
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * Sorts more examples than fit in memory.  Examples are buffered until
+ * the memory budget is reached, then the buffer is sorted and spilled
+ * to a temporary file as a run.  mergeDescending merges the runs into
+ * one stream from the highest probability down, in exactly the
+ * reverse of the order ExampleList.sort would give all the examples,
+ * so sweeping the stream gives the same sums as sweeping a sorted
+ * list.  Only the buffer and a small read buffer per run are ever in
+ * memory.
+ */
+public class ExternalSort implements ExampleSink {
+	/**
+	 * Bytes of heap used per buffered example, including the space
+	 * needed to sort the buffer
+	 */
+	private static final int BYTES_PER_EXAMPLE = 80;
+
+	/**
+	 * Bytes in an example in a run file
+	 */
+	private static final int RECORD = 17;
+
+	/**
+	 * Most examples buffered before spilling a run
+	 */
+	private final int runSize;
+
+	/**
+	 * Memory budget in bytes
+	 */
+	private final long budget;
+
+	/**
+	 * Directory for the run files, or null for the default temporary
+	 * directory
+	 */
+	private final File tmpDir;
+
+	/**
+	 * Examples added since the last run was spilled
+	 */
+	private ExampleList buffer;
+
+	/**
+	 * Run files spilled so far, in order
+	 */
+	private final ArrayList<File> runs = new ArrayList<File>();
+
+	/**
+	 * Number of examples added
+	 */
+	private long size = 0;
+
+	/**
+	 * Weight of the positive and negative examples added
+	 */
+	private double posWeight = 0;
+	private double negWeight = 0;
+
+	/**
+	 * Constructor
+	 * @param budget memory budget in bytes
+	 * @param tmpDir directory for the run files, or null for the
+	 *        default temporary directory
+	 */
+	public ExternalSort(long budget, File tmpDir) {
+		this.budget = budget;
+		this.runSize = (int)Math.max(1024,
+				Math.min(Integer.MAX_VALUE - 8, budget / BYTES_PER_EXAMPLE));
+		this.tmpDir = tmpDir;
+		buffer = new ExampleList(Math.min(runSize, 1 << 16));
+	}
+
+	/**
+	 * Adds an example, spilling a run if the buffer is full
+	 * @param prob probability of the example
+	 * @param classification 1 for positive, 0 for negative
+	 * @param weight weight of the example
+	 */
+	public void add(double prob, int classification, double weight) {
+		if (buffer.size() == runSize) {
+			try {
+				spill();
+			}
+			catch (IOException eIO) {
+				throw new UncheckedIOException(eIO);
+			}
+		}
+		buffer.add(prob, classification, weight);
+		size++;
+		if (classification == 1) {
+			posWeight += weight;
+		} else {
+			negWeight += weight;
+		}
+	}
+
+	/**
+	 * Number of examples added
+	 * @return number of examples
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Weight of the positive examples added, known before merging
+	 * @return positive weight
+	 */
+	public double getPosWeight() {
+		return posWeight;
+	}
+
+	/**
+	 * Weight of the negative examples added, known before merging
+	 * @return negative weight
+	 */
+	public double getNegWeight() {
+		return negWeight;
+	}
+
+	/**
+	 * Number of runs spilled to temporary files
+	 * @return number of runs
+	 */
+	public int getRuns() {
+		return runs.size();
+	}
+
+	/**
+	 * Sorts the buffer and writes it to a new run file from the
+	 * highest probability down
+	 * @throws IOException if the run cannot be written
+	 */
+	private void spill() throws IOException {
+		buffer.sort();
+		File file = File.createTempFile("auc-run", ".tmp", tmpDir);
+		file.deleteOnExit();
+		runs.add(file);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			for (int i = buffer.size()-1; i >= 0; i--) {
+				out.writeDouble(buffer.getProb(i));
+				out.writeByte(buffer.getClassification(i));
+				out.writeDouble(buffer.getWeight(i));
+			}
+		} finally {
+			out.close();
+		}
+		buffer = new ExampleList(Math.min(runSize, 1 << 16));
+	}
+
+	/**
+	 * Passes every example to sink from the highest probability down,
+	 * the reverse of ExampleList.sort order.  Among examples that sort
+	 * equally, later examples come first, so later runs win ties.  The
+	 * run files are deleted afterwards.
+	 * @param sink receives the examples
+	 * @throws IOException if a run cannot be read
+	 */
+	public void mergeDescending(ExampleSink sink) throws IOException {
+		if (runs.isEmpty()) {
+			// everything fit in memory
+			buffer.sort();
+			for (int i = buffer.size()-1; i >= 0; i--) {
+				sink.add(buffer.getProb(i), buffer.getClassification(i),
+						buffer.getWeight(i));
+			}
+			return;
+		}
+		if (buffer.size() > 0) {
+			spill();
+		}
+		buffer = null;
+
+		int bufSize = (int)Math.max(1 << 12,
+				Math.min(1 << 20, budget / (2 * runs.size())));
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size());
+		try {
+			for (int r = 0; r < runs.size(); r++) {
+				Run run = new Run(runs.get(r), r, bufSize);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				sink.add(run.prob, run.classification, run.weight);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+		} finally {
+			for (Run run : queue) {
+				run.close();
+			}
+			for (File file : runs) {
+				file.delete();
+			}
+			runs.clear();
+		}
+	}
+
+	/**
+	 * Cursor over a run file, ordered so the next example of the
+	 * merge is the smallest
+	 */
+	private static class Run implements Comparable<Run> {
+		private final DataInputStream in;
+		private final int index;
+		private long remaining;
+
+		double prob;
+		int classification;
+		double weight;
+		private long key;
+
+		Run(File file, int index, int bufSize) throws IOException {
+			this.index = index;
+			this.remaining = file.length() / RECORD;
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), bufSize));
+		}
+
+		/**
+		 * Reads the next example of the run
+		 * @return false at the end of the run
+		 */
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			prob = in.readDouble();
+			classification = in.readByte();
+			weight = in.readDouble();
+			key = ExampleList.sortKey(prob);
+			return true;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+		/**
+		 * Highest probability first, then negatives before positives,
+		 * then later runs first
+		 */
+		public int compareTo(Run o) {
+			int c = Long.compareUnsigned(o.key, key);
+			if (c != 0) {
+				return c;
+			}
+			if (classification != o.classification) {
+				return classification < o.classification ? -1 : 1;
+			}
+			return o.index - index;
+		}
+	}
+}
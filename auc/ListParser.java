@@ -0,0 +1,460 @@
+package auc;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+/**
+ * Parses list files (prob outcome [weight], one example per line)
+ * directly from bytes into an ExampleList or other ExampleSink.
+ * Lines are split on tabs, spaces and commas and numbers are parsed
+ * from a reusable buffer, so no String is created for a well formed
+ * line.  Bad lines are skipped with the same messages as the Scanner
+ * based reader.
+ */
+public class ListParser {
+	/**
+	 * Smallest and largest power of ten in the POW10 table
+	 */
+	private static final int MIN_EXP10 = -348;
+	private static final int MAX_EXP10 = 347;
+
+	/**
+	 * Powers of ten that are exactly representable as doubles
+	 */
+	private static final double[] SMALL_POW10 = new double[23];
+
+	/**
+	 * 128-bit mantissas of the powers of ten from MIN_EXP10 to
+	 * MAX_EXP10, rounded down, with the high 64 bits at even and
+	 * the low 64 bits at odd indices
+	 */
+	private static final long[] POW10 = new long[2 * (MAX_EXP10 - MIN_EXP10 + 1)];
+
+	static {
+		SMALL_POW10[0] = 1.0;
+		for (int i = 1; i < SMALL_POW10.length; i++) {
+			SMALL_POW10[i] = SMALL_POW10[i-1] * 10;
+		}
+		BigInteger ten = BigInteger.TEN;
+		for (int e = MIN_EXP10; e <= MAX_EXP10; e++) {
+			BigInteger m;
+			if (e >= 0) {
+				m = ten.pow(e);
+				int shift = m.bitLength() - 128;
+				m = shift > 0 ? m.shiftRight(shift) : m.shiftLeft(-shift);
+			} else {
+				BigInteger d = ten.pow(-e);
+				m = BigInteger.ONE.shiftLeft(d.bitLength() + 127).divide(d);
+				if (m.bitLength() < 128) {
+					m = BigInteger.ONE.shiftLeft(d.bitLength() + 128).divide(d);
+				}
+			}
+			int i = 2 * (e - MIN_EXP10);
+			POW10[i] = m.shiftRight(64).longValue();
+			POW10[i+1] = m.longValue();
+		}
+	}
+
+	/**
+	 * Buffer that lines are read into
+	 */
+	private byte[] buf = new byte[1 << 16];
+
+	/**
+	 * Result of the last successful parseDouble call
+	 */
+	private double value;
+
+	/**
+	 * Reads every line of in, adding the well formed ones to list
+	 * @param in stream to read, not closed
+	 * @param list list to add examples to
+	 * @throws IOException if in cannot be read
+	 */
+	public void parse(InputStream in, ExampleSink list) throws IOException {
+		int lineStart = 0;
+		int end = 0;
+		boolean skipLF = false;
+		while (true) {
+			if (end == buf.length) {
+				if (lineStart > 0) {
+					// move the partial line to the front
+					System.arraycopy(buf, lineStart, buf, 0, end - lineStart);
+					end -= lineStart;
+					lineStart = 0;
+				} else {
+					buf = Arrays.copyOf(buf, 2 * buf.length);
+				}
+			}
+			int n = in.read(buf, end, buf.length - end);
+			if (n < 0) {
+				break;
+			}
+			int i = end;
+			end += n;
+			for (; i < end; i++) {
+				byte b = buf[i];
+				if (skipLF) {
+					// \r\n ends a single line
+					skipLF = false;
+					if (b == '\n') {
+						lineStart = i + 1;
+						continue;
+					}
+				}
+				if (b == '\n' || b == '\r') {
+					parseLine(buf, lineStart, i, list);
+					skipLF = (b == '\r');
+					lineStart = i + 1;
+				}
+			}
+		}
+		if (lineStart < end) {
+			parseLine(buf, lineStart, end, list);
+		}
+	}
+
+	/**
+	 * Reads every line from the remaining bytes of in, adding the well
+	 * formed ones to list
+	 * @param in buffer to read, such as a mapped part of a file
+	 * @param list list to add examples to
+	 */
+	public void parse(final ByteBuffer in, ExampleSink list) {
+		try {
+			parse(new InputStream() {
+				public int read() {
+					return in.hasRemaining() ? (in.get() & 0xFF) : -1;
+				}
+				public int read(byte[] b, int off, int len) {
+					if (!in.hasRemaining()) {
+						return -1;
+					}
+					len = Math.min(len, in.remaining());
+					in.get(b, off, len);
+					return len;
+				}
+			}, list);
+		}
+		catch (IOException eIO) {
+			// not thrown when reading from memory
+			throw new RuntimeException(eIO);
+		}
+	}
+
+	/**
+	 * Parses a single line, without its line terminator
+	 * @param b bytes holding the line
+	 * @param start index of the first byte of the line
+	 * @param end index one past the last byte of the line
+	 * @param list list to add the example to
+	 * @return true if an example was added, false if the line was skipped
+	 */
+	public boolean parseLine(byte[] b, int start, int end, ExampleSink list) {
+		// attempt to read the points
+		int p = skipDelimiters(b, start, end);
+		int tokEnd = tokenEnd(b, p, end);
+		if (p == tokEnd || !parseDouble(b, p, tokEnd)) {
+			Log.print("... skipping bad input line (no parsable double probability found");
+			return false;
+		}
+		double prob = value;
+
+		p = skipDelimiters(b, tokEnd, end);
+		if (p == end) {
+			Log.print("... skipping bad input line (no outcome token found");
+			return false;
+		}
+		int outStart = p;
+		int outEnd = tokenEnd(b, p, end);
+
+		double weight = 1.0; // default weight
+		p = skipDelimiters(b, outEnd, end);
+		if (p < end && parseDouble(b, p, tokenEnd(b, p, end))) {
+			weight = value;
+
+			if (weight<0.0) {
+				System.err.println("... skipping bad input line (weight cannot be negative)");
+				return false;
+			}
+		}
+
+		// support for multiple outcome tokens
+		int outcome = parseOutcome(b, outStart, outEnd);
+		if (outcome == -1) {
+			System.err.println("... skipping bad input line (unknown outcome of '"
+					+ new String(b, outStart, outEnd - outStart, StandardCharsets.UTF_8) + "'");
+			return false;
+		}
+
+		list.add(prob, outcome, weight);
+		return true;
+	}
+
+	/**
+	 * Returns the value found by the last successful parseDouble call
+	 * @return parsed value
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Parses 0/1/false/true outcome tokens
+	 * @return 0 for negative, 1 for positive, -1 if not an outcome
+	 */
+	static int parseOutcome(byte[] b, int start, int end) {
+		int len = end - start;
+		if (len == 1 && b[start] == '0') {
+			return 0;
+		}
+		else if (len == 1 && b[start] == '1') {
+			return 1;
+		}
+		else if (equalsIgnoreCase(b, start, end, "false")) {
+			return 0;
+		}
+		else if (equalsIgnoreCase(b, start, end, "true")) {
+			return 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Index of the first byte at or after start that is not a
+	 * tab, space or comma
+	 */
+	static int skipDelimiters(byte[] b, int start, int end) {
+		while (start < end && isDelimiter(b[start])) {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * Index of the first tab, space or comma at or after start
+	 */
+	static int tokenEnd(byte[] b, int start, int end) {
+		while (start < end && !isDelimiter(b[start])) {
+			start++;
+		}
+		return start;
+	}
+
+	private static boolean isDelimiter(byte c) {
+		return c == '\t' || c == ' ' || c == ',';
+	}
+
+	private static boolean equalsIgnoreCase(byte[] b, int start, int end, String s) {
+		if (end - start != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (Character.toLowerCase((char)b[start+i]) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a decimal number such as -1.25e-3, NaN or Infinity from
+	 * bytes [start,end).  The result is correctly rounded, the same as
+	 * Double.parseDouble, and is available from getValue().
+	 * @return true if the whole range is a number
+	 */
+	public boolean parseDouble(byte[] b, int start, int end) {
+		int i = start;
+		boolean neg = false;
+		if (i < end && (b[i] == '-' || b[i] == '+')) {
+			neg = b[i] == '-';
+			i++;
+		}
+		if (i < end && (b[i] == 'N' || b[i] == 'I')) {
+			return parseNonNumber(b, i, end, neg);
+		}
+
+		long man = 0;
+		int digits = 0;      // significant digits in man
+		int dropped = 0;     // significant digits that did not fit in man
+		int exp10 = 0;
+		boolean any = false;
+		for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+			any = true;
+			if (digits < 19) {
+				man = 10 * man + (b[i] - '0');
+				if (man != 0) {
+					digits++;
+				}
+			} else {
+				dropped++;
+			}
+		}
+		exp10 += dropped;
+		if (i < end && b[i] == '.') {
+			i++;
+			for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+				any = true;
+				if (digits < 19) {
+					man = 10 * man + (b[i] - '0');
+					if (man != 0) {
+						digits++;
+					}
+					exp10--;
+				} else if (b[i] != '0') {
+					dropped++;
+				}
+			}
+		}
+		if (!any) {
+			return false;
+		}
+		if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+			i++;
+			boolean expNeg = false;
+			if (i < end && (b[i] == '-' || b[i] == '+')) {
+				expNeg = b[i] == '-';
+				i++;
+			}
+			if (i == end) {
+				return false;
+			}
+			int exp = 0;
+			for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+				if (exp < 100000) {
+					exp = 10 * exp + (b[i] - '0');
+				}
+			}
+			exp10 += expNeg ? -exp : exp;
+		}
+		if (i != end) {
+			return false;
+		}
+
+		if (dropped == 0 && man >= 0 && man < (1L << 53) && exp10 >= -22 && exp10 <= 22) {
+			// both man and the power of ten are exact, so a single
+			// multiplication or division is correctly rounded
+			double d = man;
+			d = exp10 < 0 ? d / SMALL_POW10[-exp10] : d * SMALL_POW10[exp10];
+			value = neg ? -d : d;
+			return true;
+		}
+		if (dropped == 0 && eiselLemire(man, exp10, neg)) {
+			return true;
+		}
+		// rare cases, let the JDK sort them out
+		value = Double.parseDouble(new String(b, start, end - start, StandardCharsets.ISO_8859_1));
+		return true;
+	}
+
+	/**
+	 * Parses NaN and Infinity, as accepted by Scanner.nextDouble
+	 */
+	private boolean parseNonNumber(byte[] b, int start, int end, boolean neg) {
+		if (equals(b, start, end, "NaN")) {
+			value = Double.NaN;
+			return true;
+		}
+		if (equals(b, start, end, "Infinity")) {
+			value = neg ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean equals(byte[] b, int start, int end, String s) {
+		if (end - start != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (b[start+i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts man*10^exp10 to the nearest double with the
+	 * Eisel-Lemire algorithm.
+	 * @return true if value was set, false if the result could not be
+	 *         decided and a slower method is needed
+	 */
+	private boolean eiselLemire(long man, int exp10, boolean neg) {
+		if (man == 0) {
+			value = neg ? -0.0 : 0.0;
+			return true;
+		}
+		if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10) {
+			return false;
+		}
+
+		// normalization
+		int clz = Long.numberOfLeadingZeros(man);
+		man <<= clz;
+		long retExp2 = ((217706 * exp10) >> 16) + 64 + 1023 - clz;
+
+		// multiplication
+		int idx = 2 * (exp10 - MIN_EXP10);
+		long powHi = POW10[idx];
+		long powLo = POW10[idx+1];
+		long xHi = multiplyHighUnsigned(man, powHi);
+		long xLo = man * powHi;
+
+		// wider approximation
+		if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + man, man) < 0) {
+			long yHi = multiplyHighUnsigned(man, powLo);
+			long yLo = man * powLo;
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+				mergedHi++;
+			}
+			if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0
+					&& Long.compareUnsigned(yLo + man, man) < 0) {
+				return false;
+			}
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+
+		// shifting to 54 bits
+		int msb = (int)(xHi >>> 63);
+		long retMantissa = xHi >>> (msb + 9);
+		retExp2 -= 1 ^ msb;
+
+		// half-way ambiguity
+		if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+			return false;
+		}
+
+		// from 54 to 53 bits
+		retMantissa += retMantissa & 1;
+		retMantissa >>>= 1;
+		if ((retMantissa >>> 53) > 0) {
+			retMantissa >>>= 1;
+			retExp2 += 1;
+		}
+		// subnormal, infinite or NaN results are left to the slow path
+		if (Long.compareUnsigned(retExp2 - 1, 0x7FF - 1) >= 0) {
+			return false;
+		}
+		long bits = (retExp2 << 52) | (retMantissa & 0x000FFFFFFFFFFFFFL);
+		if (neg) {
+			bits |= 0x8000000000000000L;
+		}
+		value = Double.longBitsToDouble(bits);
+		return true;
+	}
+
+	/**
+	 * High 64 bits of the unsigned 128-bit product of a and b
+	 */
+	private static long multiplyHighUnsigned(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+	}
+}
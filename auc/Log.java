@@ -0,0 +1,168 @@
+package auc;
+
+
+/**
+ * Leveled diagnostics printed to standard output.  Each level also
+ * prints the levels below it:
+ * <pre>
+ * OFF   nothing
+ * INFO  files being written
+ * DEBUG each step of calculating the areas, such as sorting
+ * TRACE every line read from pr and roc files
+ * </pre>
+ * The default is INFO, so a run does not spend its time printing
+ * every line it reads; -log trace prints everything the old DEBUG
+ * switch printed.  Messages that would be built from several values are only
+ * built when their level is on, by checking first:
+ * <pre>
+ * if (Log.isTrace()) {
+ *     Log.trace(x + "\t" + y);
+ * }
+ * </pre>
+ * while constant messages are passed straight in, so a message that
+ * is off costs a comparison and nothing more.  A thread working on one
+ * of several files can capture its messages and hand them back with
+ * its result, so they are printed in order instead of interleaved.
+ */
+public class Log {
+	/**
+	 * Levels, from quietest to loudest
+	 */
+	public static final int OFF = 0;
+	public static final int INFO = 1;
+	public static final int DEBUG = 2;
+	public static final int TRACE = 3;
+
+	/**
+	 * Names of the levels, indexed by level
+	 */
+	private static final String[] NAMES = {"off", "info", "debug", "trace"};
+
+	/**
+	 * Loudest level printed
+	 */
+	private static int level = INFO;
+
+	/**
+	 * Messages captured by the current thread, or null if it prints
+	 * them straight away
+	 */
+	private static final ThreadLocal<StringBuilder> captured =
+		new ThreadLocal<StringBuilder>();
+
+	/**
+	 * Sets the loudest level printed
+	 * @param l one of OFF, INFO, DEBUG or TRACE
+	 */
+	public static void setLevel(int l) {
+		level = Math.max(OFF, Math.min(TRACE, l));
+	}
+
+	/**
+	 * Finds a level by name
+	 * @param name off, info, debug or trace, in any case
+	 * @return level, or -1 if the name is unknown
+	 */
+	public static int parseLevel(String name) {
+		for (int l = 0; l < NAMES.length; l++) {
+			if (NAMES[l].equalsIgnoreCase(name)) {
+				return l;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if INFO messages are printed
+	 * @return true if printed
+	 */
+	public static boolean isInfo() {
+		return level >= INFO;
+	}
+
+	/**
+	 * Checks if DEBUG messages are printed
+	 * @return true if printed
+	 */
+	public static boolean isDebug() {
+		return level >= DEBUG;
+	}
+
+	/**
+	 * Checks if TRACE messages are printed
+	 * @return true if printed
+	 */
+	public static boolean isTrace() {
+		return level >= TRACE;
+	}
+
+	/**
+	 * Prints an INFO message
+	 * @param message message to print
+	 */
+	public static void info(String message) {
+		if (level >= INFO) {
+			println(message);
+		}
+	}
+
+	/**
+	 * Prints a DEBUG message
+	 * @param message message to print
+	 */
+	public static void debug(String message) {
+		if (level >= DEBUG) {
+			println(message);
+		}
+	}
+
+	/**
+	 * Prints a TRACE message
+	 * @param message message to print
+	 */
+	public static void trace(String message) {
+		if (level >= TRACE) {
+			println(message);
+		}
+	}
+
+	/**
+	 * Prints a message whatever the level, such as a skipped input
+	 * line
+	 * @param message message to print
+	 */
+	public static void print(String message) {
+		println(message);
+	}
+
+	/**
+	 * Starts capturing the messages of the current thread instead of
+	 * printing them
+	 */
+	public static void capture() {
+		captured.set(new StringBuilder());
+	}
+
+	/**
+	 * Stops capturing the messages of the current thread
+	 * @return the messages captured since capture, one per line
+	 */
+	public static String release() {
+		StringBuilder text = captured.get();
+		captured.remove();
+		return text == null ? "" : text.toString();
+	}
+
+	/**
+	 * Prints a message, or adds it to the captured messages
+	 * @param message message to print
+	 */
+	private static void println(String message) {
+		StringBuilder text = captured.get();
+		if (text != null) {
+			text.append(message).append(System.lineSeparator());
+		} else {
+			System.out.println(message);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package auc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for one phase of a run, such as parsing or
+ * sorting, so the phases line up with GC and CPU samples in a
+ * recording.  Emitted by Stats whenever a recording enables it.
+ */
+@Name("auc.Phase")
+@Label("AUC Phase")
+@Category("AUC")
+@Description("One phase of calculating the areas, such as reading or sorting")
+class PhaseEvent extends jdk.jfr.Event {
+	@Label("Phase")
+	String phase;
+
+	@Label("Items")
+	@Description("Examples, points or lines handled by the phase")
+	long items;
+
+	@Label("Allocated")
+	@Description("Bytes allocated by the thread running the phase")
+	@DataAmount
+	long allocated;
+}
@@ -78,4 +78,48 @@ public class Point implements Comparable {
 			return false;
 		}	    
 	}
+
+	/**
+	 * Checks the first n points given by xs and ys for one within
+	 * EPSILON of (x,y).  The points must be sorted by x and then by y
+	 * (ascending or descending) and x must be at least xs[n-1], so
+	 * only the runs of equal x within EPSILON of x are searched, each
+	 * with a binary search on y.
+	 * @param yAsc true if y values of equal x are sorted ascending
+	 * @return true if a point within EPSILON is found
+	 */
+	static boolean containsNear(double[] xs, double[] ys, int n,
+			double x, double y, boolean yAsc) {
+		int end = n;
+		while (end > 0 && x - xs[end-1] <= EPSILON) {
+			// find the run of points with x equal to xs[end-1]
+			double runX = xs[end-1];
+			int lo = 0, hi = end - 1;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (xs[mid] < runX) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			int start = lo;
+
+			// first point in the run not before y-EPSILON
+			hi = end;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (yAsc ? ys[mid] < y - EPSILON : ys[mid] > y + EPSILON) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			if (lo < end && Math.abs(ys[lo] - y) <= EPSILON) {
+				return true;
+			}
+			end = start;
+		}
+		return false;
+	}
 }
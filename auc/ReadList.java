@@ -2,7 +2,12 @@ package auc;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Static methods for reading list type files
@@ -26,66 +31,110 @@ public class ReadList{
 
 
 	/**
-       @param probs
-       @param cats
-       @param display
+	 * Creates a Confusion with a point at every split between a
+	 * positive example and the negative example just below it.
+	 * @param sort examples, sorted in place
+	 * @param posCount number of positive examples
+	 * @param negCount number of negative examples
+	 * @return Confusion object, not sorted or interpolated
 	 */
 	public static Confusion accuracyScoreAllSplits(ClassSort[] sort, int posCount, int negCount){
 		Arrays.sort(sort);
-		for(int ix = (sort.length-1); ix >= (sort.length-20); ix--){
-			//System.out.println(sort[ix].getProb() + " " + sort[ix].getClassification());
-		}
+		return accuracyScoreAllSplits(new ExampleList(Arrays.asList(sort)),
+				posCount, negCount);
+	}
+
+	/**
+	 * Creates a Confusion with a point at every split between a
+	 * positive example and the negative example just below it, using
+	 * the weights of the examples.  The TP and FP counts of every
+	 * split come from a single cumulative sweep down the sorted list.
+	 * @param list examples, sorted in place
+	 * @param posCount total weight of positive examples
+	 * @param negCount total weight of negative examples
+	 * @return Confusion object, not sorted or interpolated
+	 */
+	public static Confusion accuracyScoreAllSplits(ExampleList list,
+			double posCount, double negCount){
+		list.sort();
 
 		Confusion points = new Confusion(posCount, negCount);
-		int cat1Seen = 0;
-		double prevThres = sort[sort.length-1].getProb();
-		double currThres;
-		int prevClass = sort[sort.length-1].getClassification();
-		int currClass;
-		double area = 0;
-		double prevTPR = 0;
-		double prevFPR = 0;
-		int[] roc;
-		double[] newProbs = new double[sort.length];
-		int[] newCats = new int[sort.length];
-		for(int ix = 0; ix < sort.length; ix++){
-			newProbs[ix] = sort[ix].getProb();
-			newCats[ix] = sort[ix].getClassification();
-			//System.out.println(newProbs[ix] + " " + newCats[ix]);
+		double tp = 0;
+		double fp = 0;
+		for(int ix = list.size()-1; ix >= 0; ix--){
+			// tp and fp hold the examples above ix, which are exactly
+			// the examples with prob >= the prob at ix+1 since positives
+			// sort first within ties
+			if (ix < list.size()-1 && list.getClassification(ix+1) == 1
+					&& list.getClassification(ix) == 0){
+				points.addPoint(tp, fp);
+			}
+			if (list.getClassification(ix) == 1){
+				tp += list.getWeight(ix);
+			}
+			else{
+				fp += list.getWeight(ix);
+			}
 		}
-		LinkedList list = new LinkedList();
-		//System.out.println(sort.length);
-		for(int ix = sort.length-2; ix >=0 ; ix--){
-			currClass = sort[ix].getClassification();
-			currThres = sort[ix].getProb();
-
-			if (prevClass ==1 && 0 == currClass){
-				if (sort[ix+1].getProb() > currThres){
-
-				}
-				else if (sort[ix+1].getProb() > currThres){
+		return points;
+	}//end of method accuracyScoreAllSplits
 
-				}
-				else{
-					System.out.println("Bad");
-				}
-				roc = fastAccuracy(newProbs, newCats, prevThres);
 
-				points.addPoint(roc[TP], roc[FP]);
-				/*
-		  double recall = ((double)roc[TP])/((double)(roc[TP] + roc[FN]));
-		  double prec = ((double)roc[TP])/((double)(roc[TP] + roc[FP]));
+	/**
+	 * Threshold row of the accuracyAllThresholds result, the other
+	 * rows are TP, FP, FN and TN
+	 */
+	public static final int THRES = 4;
 
-		  double falsePosRate = ((double)roc[FP])/((double)(roc[FP] + roc[TN]));
-				 */
+	/**
+	 * Calculates the weighted TP, FP, FN and TN counts of calling every
+	 * example with probability >= thres positive, for every distinct
+	 * probability thres, in one sweep after sorting.
+	 * @param list examples, sorted in place
+	 * @return array of rows indexed by TP, FP, FN, TN and THRES, where
+	 *         column k is the kth highest threshold
+	 */
+	public static double[][] accuracyAllThresholds(ExampleList list){
+		list.sort();
+
+		double totPos = 0;
+		double totNeg = 0;
+		int thresholds = 0;
+		for(int ix = 0; ix < list.size(); ix++){
+			if (list.getClassification(ix) == 1){
+				totPos += list.getWeight(ix);
+			}
+			else{
+				totNeg += list.getWeight(ix);
+			}
+			if (ix == 0 || list.getProb(ix) != list.getProb(ix-1)){
+				thresholds++;
 			}
-			cat1Seen += currClass;
-			prevThres = currThres;
-			prevClass = currClass;
+		}
 
+		double[][] roc = new double[5][thresholds];
+		double tp = 0;
+		double fp = 0;
+		int k = 0;
+		for(int ix = list.size()-1; ix >= 0; ix--){
+			if (list.getClassification(ix) == 1){
+				tp += list.getWeight(ix);
+			}
+			else{
+				fp += list.getWeight(ix);
+			}
+			if (ix == 0 || list.getProb(ix) != list.getProb(ix-1)){
+				// last example with this probability
+				roc[TP][k] = tp;
+				roc[FP][k] = fp;
+				roc[FN][k] = totPos - tp;
+				roc[TN][k] = totNeg - fp;
+				roc[THRES][k] = list.getProb(ix);
+				k++;
+			}
 		}
-		return points;
-	}//end of method accuracyScoreAllSplits
+		return roc;
+	}
 
 
 	/**
@@ -98,7 +147,9 @@ public class ReadList{
        @param cats the classification of the example
        @param thres the threshold for calling example cat1
 
-       @return
+       @return counts indexed by TP, FP, FN and TN
+
+       @see #accuracyAllThresholds for the counts at every threshold
 	 */
 	public static int[] fastAccuracy(double[] probs, int[] cats, double thres){
 		int[] roc = new int[4];
@@ -137,96 +188,593 @@ public class ReadList{
 	 * @return Confusion object
 	 */
 	public static Confusion readFile(String fileName, String fileType) {
+		return readFile(fileName, fileType, true);
+	}
+
+	/**
+	 * Read in file containing data points. Format is 1 example per line:
+	 * probability class [weight]
+	 * @param fileName file to read
+	 * @param fileType type of file, list
+	 * @param interpolate true to add interpolated points to the Confusion
+	 * @return Confusion object
+	 */
+	public static Confusion readFile(String fileName, String fileType,
+			boolean interpolate) {
+		return readFile(fileName, fileType, interpolate, 1);
+	}
+
+	/**
+	 * Read in file containing data points. Format is 1 example per line:
+	 * probability class [weight]
+	 * @param fileName file to read
+	 * @param fileType type of file, list
+	 * @param interpolate true to add interpolated points to the Confusion
+	 * @param threads number of threads parsing the file, more than 1
+	 *        memory maps the file and parses chunks of it in parallel
+	 * @return Confusion object
+	 */
+	public static Confusion readFile(String fileName, String fileType,
+			boolean interpolate, int threads) {
+
+		ExampleList list = readList(fileName, threads);
+		//System.out.println(posCount + " " + (total-posCount));
 
-		ArrayList<ClassSort> list = new ArrayList<ClassSort>();
+		return Confusion.createConfusion(list, interpolate);
+	}
+
+	/**
+	 * Read in a list file that may not fit in memory.  Examples are
+	 * sorted in runs of at most budget bytes that are spilled to
+	 * temporary files and merged straight into the cumulative sweep of
+	 * Confusion.createConfusion, giving the same Confusion as readFile.
+	 * The Confusion still holds a point for every distinct probability,
+	 * and for every positive if interpolated, so with continuous
+	 * probabilities it needs more memory than the examples themselves;
+	 * readLargeAreas keeps memory within the budget.
+	 * @param fileName file to read
+	 * @param interpolate true to add interpolated points to the Confusion
+	 * @param budget bytes of memory to use for sorting
+	 * @param tmpDir directory for the temporary files, or null for the
+	 *        default temporary directory
+	 * @return Confusion object
+	 */
+	public static Confusion readLargeFile(String fileName, boolean interpolate,
+			long budget, File tmpDir) {
+		ExternalSort sort = sortLargeFile(fileName, budget, tmpDir);
+		Confusion.Sweep sweep = new Confusion.Sweep(1 << 10);
+		merge(sort, sweep, fileName);
+		return sweep.createConfusion(interpolate, false);
+	}
 
-		BufferedReader fin = null;
+	/**
+	 * Calculates the areas of a list file that may not fit in memory,
+	 * sorting it as readLargeFile does but calculating AUC-ROC and the
+	 * closed form AUC-PR straight from the merged stream, so no point
+	 * is kept and memory stays within the budget whatever the
+	 * probabilities.  The areas are those of calculateAUCROC, up to
+	 * rounding, and calculateAUCPRClosedForm on the Confusion of
+	 * readLargeFile.
+	 * @param fileName file to read
+	 * @param minRecall the lower bound cutoff for recall
+	 * @param budget bytes of memory to use for sorting
+	 * @param tmpDir directory for the temporary files, or null for the
+	 *        default temporary directory
+	 * @return AUC-PR and AUC-ROC, in that order
+	 */
+	public static double[] readLargeAreas(String fileName, double minRecall,
+			long budget, File tmpDir) {
+		ExternalSort sort = sortLargeFile(fileName, budget, tmpDir);
+		double[] areas;
+		if (sort.getPosWeight() < 1 || sort.getNegWeight() < 1) {
+			// the Confusion defaults its totals, leave it to the
+			// Confusion so the same area or error results
+			Confusion.Sweep sweep = new Confusion.Sweep(1 << 10);
+			merge(sort, sweep, fileName);
+			Confusion points = sweep.createConfusion(false, true);
+			areas = new double[] {points.areaPR(minRecall, true), points.areaROC()};
+		} else {
+			Confusion.StreamingAreas sweep = new Confusion.StreamingAreas(
+					sort.getPosWeight(), sort.getNegWeight(), minRecall);
+			merge(sort, sweep, fileName);
+			sweep.finish();
+			areas = new double[] {sweep.getAUCPR(), sweep.getAUCROC()};
+		}
+		return areas;
+	}
+
+	/**
+	 * Reads a list file into an external sort, spilling sorted runs to
+	 * temporary files, exiting if the file cannot be read
+	 * @param fileName file to read
+	 * @param budget bytes of memory to use for sorting
+	 * @param tmpDir directory for the temporary files, or null
+	 * @return sort holding every example of the file
+	 */
+	private static ExternalSort sortLargeFile(String fileName, long budget,
+			File tmpDir) {
+		Stats.Phase phase = Stats.begin("readFile");
+		ExternalSort sort = new ExternalSort(budget, tmpDir);
 		try {
-			fin = new BufferedReader(new FileReader(new File(fileName)));
+			readExamples(fileName, sort);
+		} catch (UncheckedIOException eIO) {
+			// from spilling a run
+			System.err.println("ERROR: IO Exception writing temporary file - exiting...");
+			System.exit(-1);
+		} catch (FileNotFoundException fnfe) {
+			// User didn't type in an existing fileName
+			System.err.println("ERROR: File " + fileName + " not found - exiting...");
+			System.exit(-1);
+		} catch (IOException ioe) {
+			System.err.println("ERROR: IO Exception in file " + fileName + " - exiting...");
+			System.exit(-1);
+		}
+		phase.end(sort.size());
+		return sort;
+	}
 
+	/**
+	 * Merges the runs of an external sort into a sweep, from the
+	 * highest probability down, exiting if a run cannot be read
+	 * @param sort sorted examples
+	 * @param sweep receives the examples
+	 * @param fileName file the examples came from
+	 */
+	private static void merge(ExternalSort sort, ExampleSink sweep,
+			String fileName) {
+		Stats.Phase phase = Stats.begin("merge");
+		try {
+			sort.mergeDescending(sweep);
+		} catch (IOException ioe) {
+			System.err.println("ERROR: IO Exception merging runs of " + fileName + " - exiting...");
+			System.exit(-1);
+		}
+		phase.end(sort.size());
+	}
 
-			while (fin.ready()) {
+	/**
+	 * Reads the examples of a list file, exiting if the file cannot be
+	 * read just like readFile
+	 * @param fileName file to read
+	 * @param threads number of threads parsing the file
+	 * @return examples of the file, in file order
+	 */
+	public static ExampleList readList(String fileName, int threads) {
+		Stats.Phase phase = Stats.begin("readFile");
+		ExampleList list = null;
+		try {
+			list = readExamples(fileName, threads);
+		} catch (FileNotFoundException fnfe) {
+			// User didn't type in an existing fileName
+			System.err.println("ERROR: File " + fileName + " not found - exiting...");
+			System.exit(-1);
+		} catch (IOException ioe) {
+			// javac made me do it..
+			System.err.println("ERROR: IO Exception in file " + fileName + " - exiting...");
+			System.exit(-1);
+		}
+		phase.end(list.size());
+		return list;
+	}
 
-				String line = fin.readLine();
-				if (AUCCalculator.DEBUG) { 
-					// System.out.println(line);
+	/**
+	 * File name that stands for standard input
+	 */
+	public static final String STDIN = "-";
+
+	/**
+	 * Opens an input file for reading.  STDIN reads standard input,
+	 * and gzip compressed input, recognized by its magic bytes, is
+	 * decompressed on a separate thread so decompression overlaps
+	 * with parsing.
+	 * @param fileName file to open, or STDIN
+	 * @return stream of the uncompressed bytes, supporting mark
+	 * @throws IOException if the file cannot be opened or uses an
+	 *         unsupported compression
+	 */
+	public static InputStream open(String fileName) throws IOException {
+		InputStream in;
+		if (fileName.equals(STDIN)) {
+			in = new FilterInputStream(System.in) {
+				public void close() {
+					// leave standard input open
 				}
+			};
+		} else {
+			in = new FileInputStream(new File(fileName));
+		}
+		in = new BufferedInputStream(in, 1 << 16);
+
+		in.mark(4);
+		int b0 = in.read(), b1 = in.read(), b2 = in.read(), b3 = in.read();
+		in.reset();
+		if (b0 == 0x1f && b1 == 0x8b) {
+			// gzip
+			return new BufferedInputStream(new BackgroundInputStream(
+					new GZIPInputStream(in, 1 << 16), "decompress " + fileName),
+					1 << 16);
+		}
+		if (b0 == 0x28 && b1 == 0xb5 && b2 == 0x2f && b3 == 0xfd) {
+			in.close();
+			System.err.println("ERROR: " + fileName + " is zstd compressed, which "
+					+ "the JDK cannot read - pipe it in with zstd -dc and use - "
+					+ "as the file name");
+			throw new IOException("Unsupported compression in " + fileName);
+		}
+		return in;
+	}
 
-				// tokenize the line by tab, space or comma
-				// scanner is nice since it deals with multiple spaces, tabs, commas and tabs, etc. but it is much slower
-				Scanner sc = new Scanner(line);
-				sc.useDelimiter("[\t ,]+");
+	/**
+	 * Checks if a file name is a plain file on disk that can be memory
+	 * mapped, not standard input or a compressed file
+	 * @param fileName file to check
+	 * @return true if the file can be mapped
+	 * @throws IOException if the file cannot be read
+	 */
+	private static boolean isPlainFile(String fileName) throws IOException {
+		if (fileName.equals(STDIN)) {
+			return false;
+		}
+		InputStream in = new FileInputStream(new File(fileName));
+		try {
+			int b0 = in.read(), b1 = in.read();
+			return !(b0 == 0x1f && b1 == 0x8b) && !(b0 == 0x28 && b1 == 0xb5);
+		} finally {
+			in.close();
+		}
+	}
 
+	/**
+	 * Reads the examples of a list file into primitive columns, in
+	 * file order.  Binary list files written by BinaryList are
+	 * recognized and memory mapped instead of parsed.  Compressed
+	 * files and standard input are read as streams, see open.
+	 * @param fileName file to read
+	 * @param threads number of threads parsing the file, more than 1
+	 *        memory maps the file and parses chunks of it in parallel
+	 * @return examples of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ExampleList readExamples(String fileName, int threads)
+	throws IOException {
+		if (isPlainFile(fileName)) {
+			File file = new File(fileName);
+			if (BinaryList.isBinary(file)) {
+				return BinaryList.read(file);
+			}
+			if (threads > 1) {
+				return readMapped(file, threads);
+			}
+		}
 
-				// attempt to read the points
+		InputStream fin = open(fileName);
+		try {
+			if (BinaryList.isBinary(fin)) {
+				return BinaryList.read(fin);
+			}
+			ExampleList list = new ExampleList();
+			new ListParser().parse(fin, list);
+			return list;
+		} finally {
+			fin.close();
+		}
+	}
 
-				if (!sc.hasNextDouble()) {
-					System.out.println("... skipping bad input line (no parsable double probability found");
-					continue;
-				}
-				double prob = sc.nextDouble();
-				if (!sc.hasNext()) {
-					System.out.println("... skipping bad input line (no outcome token found");
-					continue;
-				}
-				String outToken = sc.next();
-				double weight = 1.0; // default weight
-				if (sc.hasNextDouble()) {
-					weight = sc.nextDouble();
-
-					if (weight<0.0) {
-						System.err.println("... skipping bad input line (weight cannot be negative)");
-						continue;
-					}
+	/**
+	 * Reads the examples of a list file, passing each to sink in file
+	 * order without keeping them
+	 * @param fileName file to read
+	 * @param sink receives the examples
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void readExamples(String fileName, ExampleSink sink)
+	throws IOException {
+		InputStream fin = open(fileName);
+		try {
+			if (BinaryList.isBinary(fin)) {
+				ExampleList list = BinaryList.read(fin);
+				for (int i = 0; i < list.size(); i++) {
+					sink.add(list.getProb(i), list.getClassification(i), list.getWeight(i));
 				}
+				return;
+			}
+			// tokenize each line by tab, space or comma straight from
+			// the bytes, without a Scanner or String per line
+			new ListParser().parse(fin, sink);
+		} finally {
+			fin.close();
+		}
+	}
 
-				// support for multiple outcome tokens
-				int outcome = -1;
-				if (outToken.equals("0")) {
-					outcome = 0;
-				}
-				else if (outToken.equals("1")) {
-					outcome = 1;
-				}
-				else if (outToken.equalsIgnoreCase("false")) {
-					outcome = 0;
-				}
-				else if (outToken.equalsIgnoreCase("true")) {
-					outcome = 1;
-				}
-				else {
-					System.err.println("... skipping bad input line (unknown outcome of '" + outToken + "'");
-					continue;
-				}
+	/**
+	 * Read in a grouped list file, one example per line:
+	 * key probability class [weight]
+	 * and partition the examples by key in a single pass.
+	 * @param fileName file to read
+	 * @return examples of each key, in order of first appearance
+	 */
+	public static LinkedHashMap<String, ExampleList> readGroups(String fileName) {
+		GroupParser parser = new GroupParser();
+		try {
+			InputStream fin = open(fileName);
+			try {
+				parser.parse(fin, null);
+			} finally {
+				fin.close();
+			}
+		} catch (FileNotFoundException fnfe) {
+			// User didn't type in an existing fileName
+			System.err.println("ERROR: File " + fileName + " not found - exiting...");
+			System.exit(-1);
+		} catch (IOException ioe) {
+			// javac made me do it..
+			System.err.println("ERROR: IO Exception in file " + fileName + " - exiting...");
+			System.exit(-1);
+		}
+		return parser.groups;
+	}
 
-				if (outcome!=-1) {			
-					list.add(new ClassSort(prob, outcome,weight));
+	/**
+	 * Parses lines of a grouped list file, handing everything after
+	 * the key to the list file parser and adding the example to the
+	 * key's list once the line has parsed
+	 */
+	private static class GroupParser extends ListParser implements ExampleSink {
+		/**
+		 * Examples of each key seen so far
+		 */
+		final LinkedHashMap<String, ExampleList> groups =
+			new LinkedHashMap<String, ExampleList>();
+
+		/**
+		 * Key of the previous line and its examples, as logs often
+		 * have runs of lines with the same key
+		 */
+		private byte[] lastKey = new byte[0];
+		private ExampleList lastList = null;
+
+		/**
+		 * Example parsed from the current line
+		 */
+		private double prob;
+		private int outcome;
+		private double weight;
+
+		public boolean parseLine(byte[] b, int start, int end, ExampleSink list) {
+			int p = skipDelimiters(b, start, end);
+			int keyEnd = tokenEnd(b, p, end);
+			if (p == keyEnd) {
+				Log.print("... skipping bad input line (no group key found");
+				return false;
+			}
+			if (!super.parseLine(b, keyEnd, end, this)) {
+				// a bad line does not create a group
+				return false;
+			}
+			if (lastList == null || !sameKey(b, p, keyEnd)) {
+				String key = new String(b, p, keyEnd - p, StandardCharsets.UTF_8);
+				lastList = groups.get(key);
+				if (lastList == null) {
+					lastList = new ExampleList();
+					groups.put(key, lastList);
 				}
+				lastKey = Arrays.copyOfRange(b, p, keyEnd);
+			}
+			lastList.add(prob, outcome, weight);
+			return true;
+		}
 
+		/**
+		 * Keeps the example of the current line until its key is found
+		 * @param prob probability of the example
+		 * @param outcome 1 for positive, 0 for negative
+		 * @param weight weight of the example
+		 */
+		public void add(double prob, int outcome, double weight) {
+			this.prob = prob;
+			this.outcome = outcome;
+			this.weight = weight;
+		}
 
-
-				if (AUCCalculator.DEBUG) { 
-					//System.err.println(prob + "\t" + outcome);
-				}
-				if (AUCCalculator.DEBUG) { 
-					//System.out.println("End of Line");
+		private boolean sameKey(byte[] b, int start, int end) {
+			if (end - start != lastKey.length) {
+				return false;
+			}
+			for (int i = 0; i < lastKey.length; i++) {
+				if (b[start + i] != lastKey[i]) {
+					return false;
 				}
 			}
+			return true;
+		}
+	}
+
+	/**
+	 * Read in a list file into a histogram of probabilities, using
+	 * memory independent of the number of examples
+	 * @param fileName file to read
+	 * @param bins number of equal width bins over [0,1]
+	 * @return histogram of the examples
+	 */
+	public static ScoreHistogram readHistogram(String fileName, int bins) {
+		ScoreHistogram histogram = new ScoreHistogram(bins);
+		try {
+			readExamples(fileName, histogram);
 		} catch (FileNotFoundException fnfe) {
 			// User didn't type in an existing fileName
 			System.err.println("ERROR: File " + fileName + " not found - exiting...");
 			System.exit(-1);
-		} catch (NoSuchElementException nsee) {
-			// Caused by incorrect fileType argument
-			System.err.println("...incorrect fileType argument, either PR or ROC - exiting");
-			System.exit(-1);
 		} catch (IOException ioe) {
 			// javac made me do it..
 			System.err.println("ERROR: IO Exception in file " + fileName + " - exiting...");
 			System.exit(-1);
 		}
-		//System.out.println(posCount + " " + (total-posCount));
+		return histogram;
+	}
+
+	/**
+	 * Smallest chunk of a file worth parsing on its own thread
+	 */
+	private static final long MIN_CHUNK = 1 << 20;
+
+	/**
+	 * Largest chunk mapped at once, must fit in a single mapping
+	 */
+	private static final long MAX_CHUNK = 1 << 28;
+
+	/**
+	 * Memory maps a list file and parses chunks of whole lines in
+	 * parallel, each into its own ExampleList.  The lists are merged
+	 * in file order, so the result is the same as reading the file
+	 * sequentially.
+	 * @param file file to read
+	 * @param threads number of parsing threads
+	 * @return examples of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private static ExampleList readMapped(File file, int threads)
+	throws IOException {
+		final FileChannel channel = new FileInputStream(file).getChannel();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			long size = channel.size();
+			long chunk = Math.min(MAX_CHUNK,
+					Math.max(MIN_CHUNK, size / (4L * threads) + 1));
+
+			// split on line boundaries
+			ArrayList<Long> starts = new ArrayList<Long>();
+			long start = 0;
+			while (start < size) {
+				starts.add(start);
+				long next = nextLineStart(channel, start + chunk, size);
+				if (next - start > Integer.MAX_VALUE) {
+					// a line longer than a mapping, read it as a stream
+					InputStream fin = open(file.getPath());
+					try {
+						ExampleList list = new ExampleList();
+						new ListParser().parse(fin, list);
+						return list;
+					} finally {
+						fin.close();
+					}
+				}
+				start = next;
+			}
+			starts.add(size);
+
+			final Stats.Phase phase = Stats.current();
+			ArrayList<Future<ExampleList>> parts = new ArrayList<Future<ExampleList>>();
+			for (int i = 0; i < starts.size() - 1; i++) {
+				final long from = starts.get(i);
+				final long to = starts.get(i+1);
+				parts.add(pool.submit(new Callable<ExampleList>() {
+					public ExampleList call() throws IOException {
+						long bytes = Stats.allocatedBytes();
+						try {
+							ExampleList part = new ExampleList((int)((to - from) / 16));
+							new ListParser().parse(
+									channel.map(FileChannel.MapMode.READ_ONLY, from, to - from),
+									part);
+							return part;
+						} finally {
+							phase.addWorkerBytes(bytes);
+						}
+					}
+				}));
+			}
 
-		return Confusion.createConfusion(list);
+			ArrayList<ExampleList> lists = new ArrayList<ExampleList>();
+			int total = 0;
+			for (Future<ExampleList> f : parts) {
+				ExampleList part = get(f);
+				lists.add(part);
+				total += part.size();
+			}
+			ExampleList list = new ExampleList(total);
+			for (ExampleList part : lists) {
+				list.addAll(part);
+			}
+			return list;
+		} finally {
+			pool.shutdown();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Finds the start of the first line beginning at or after pos.
+	 * Lines end with \n, \r\n or \r, as ListParser splits them.
+	 * @param channel file to search
+	 * @param pos position to start looking from
+	 * @param size size of the file
+	 * @return index just past the next line terminator, or size if
+	 *         there is none
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long nextLineStart(FileChannel channel, long pos, long size)
+	throws IOException {
+		if (pos >= size) {
+			return size;
+		}
+		ByteBuffer window = ByteBuffer.allocate(1 << 16);
+		// include the byte before pos in case a line ends right there
+		pos--;
+		while (pos < size) {
+			window.clear();
+			int n = channel.read(window, pos);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				byte b = window.get(i);
+				if (b == '\n') {
+					return pos + i + 1;
+				}
+				if (b == '\r') {
+					// keep a \r\n pair in the same chunk
+					long next = pos + i + 1;
+					if (next < size && readByte(channel, next) == '\n') {
+						next++;
+					}
+					return next;
+				}
+			}
+			pos += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Reads a single byte of a file
+	 * @param channel file to read
+	 * @param pos position of the byte
+	 * @return the byte, or -1 past the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private static int readByte(FileChannel channel, long pos)
+	throws IOException {
+		ByteBuffer one = ByteBuffer.allocate(1);
+		return channel.read(one, pos) == 1 ? one.get(0) : -1;
+	}
+
+	/**
+	 * Waits for a parsing task, passing on its IOException
+	 * @param f task to wait for
+	 * @return result of the task
+	 * @throws IOException if the task failed to read the file
+	 */
+	private static <T> T get(Future<T> f) throws IOException {
+		try {
+			return f.get();
+		}
+		catch (InterruptedException eInt) {
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException eExec) {
+			if (eExec.getCause() instanceof IOException) {
+				throw (IOException)eExec.getCause();
+			}
+			throw new RuntimeException(eExec.getCause());
+		}
 	}
 }
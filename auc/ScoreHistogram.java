@@ -0,0 +1,194 @@
+package auc;
+
+
+/**
+ * ScoreHistogram keeps the weighted number of positive and negative
+ * examples falling into each of a fixed number of equal width bins
+ * of probability.  Memory does not depend on the number of examples,
+ * and histograms with the same bins built from different parts of a
+ * dataset can be merged exactly.  Curves are approximated by treating
+ * the examples in a bin as tied, and the error of the areas is
+ * bounded by ordering each bin best and worst case.
+ */
+public class ScoreHistogram implements ExampleSink {
+	/**
+	 * Lower and upper end of the probability range, examples outside
+	 * of it are counted in the first or last bin
+	 */
+	private final double min, max;
+
+	/**
+	 * Weight of positive examples in each bin
+	 */
+	private final double[] pos;
+
+	/**
+	 * Weight of negative examples in each bin
+	 */
+	private final double[] neg;
+
+	/**
+	 * Constructor for bins over probabilities from 0.0 to 1.0
+	 * @param bins number of bins
+	 */
+	public ScoreHistogram(int bins) {
+		this(bins, 0.0, 1.0);
+	}
+
+	/**
+	 * Constructor for bins over probabilities from min to max
+	 * @param bins number of bins
+	 * @param min lower end of the first bin
+	 * @param max upper end of the last bin
+	 */
+	public ScoreHistogram(int bins, double min, double max) {
+		if (bins < 1 || !(min < max)) {
+			throw new IllegalArgumentException("Need at least 1 bin and min<max");
+		}
+		this.min = min;
+		this.max = max;
+		pos = new double[bins];
+		neg = new double[bins];
+	}
+
+	/**
+	 * Counts an example in its bin
+	 * @param prob probability of the example
+	 * @param classification 1 for positive, 0 for negative
+	 * @param weight weight of the example
+	 */
+	public void add(double prob, int classification, double weight) {
+		int bin = (int)((prob - min) / (max - min) * pos.length);
+		bin = Math.max(0, Math.min(pos.length - 1, bin));
+		if (classification == 1) {
+			pos[bin] += weight;
+		} else {
+			neg[bin] += weight;
+		}
+	}
+
+	/**
+	 * Adds the counts of other, which must have the same bins
+	 * @param other histogram to merge in
+	 */
+	public void merge(ScoreHistogram other) {
+		if (other.pos.length != pos.length || other.min != min || other.max != max) {
+			throw new IllegalArgumentException("Can only merge histograms with the same bins");
+		}
+		for (int i = 0; i < pos.length; i++) {
+			pos[i] += other.pos[i];
+			neg[i] += other.neg[i];
+		}
+	}
+
+	/**
+	 * Number of bins
+	 * @return number of bins
+	 */
+	public int getBins() {
+		return pos.length;
+	}
+
+	/**
+	 * Weight of positive examples in a bin
+	 * @param bin index of the bin
+	 * @return weight of positives
+	 */
+	public double getPos(int bin) {
+		return pos[bin];
+	}
+
+	/**
+	 * Weight of negative examples in a bin
+	 * @param bin index of the bin
+	 * @return weight of negatives
+	 */
+	public double getNeg(int bin) {
+		return neg[bin];
+	}
+
+	/**
+	 * Creates the Confusion with a threshold at each bin boundary,
+	 * the examples within a bin are treated as tied
+	 * @param interpolate true to add the interpolated points
+	 * @return Confusion object
+	 */
+	public Confusion createConfusion(boolean interpolate) {
+		return Confusion.createConfusion(createExamples(0.0), interpolate);
+	}
+
+	/**
+	 * Bound on the error of the AUC-ROC of createConfusion.  Ties
+	 * within a bin get half credit, while the exact curve could give
+	 * them all or none, so the error is at most half the tied pairs.
+	 * @return largest possible difference from the exact AUC-ROC
+	 */
+	public double getAUCROCError() {
+		double totPos = 0, totNeg = 0, tied = 0;
+		for (int i = 0; i < pos.length; i++) {
+			totPos += pos[i];
+			totNeg += neg[i];
+			tied += pos[i] * neg[i];
+		}
+		return 0.5 * tied / (totPos * totNeg);
+	}
+
+	/**
+	 * AUC-PR of createConfusion, integrated in closed form between the
+	 * bin boundaries so no interpolated points are created and memory
+	 * stays proportional to the number of bins
+	 * @param minRecall the lower bound cutoff for recall
+	 * @return the AUC-PR
+	 */
+	public double getAUCPR(double minRecall) {
+		return areaPR(0.0, minRecall);
+	}
+
+	/**
+	 * Bound on the error of getAUCPR, from the curves with every bin
+	 * ordered positives first and negatives first
+	 * @param minRecall the lower bound cutoff for recall
+	 * @return largest difference from the best and worst case AUC-PR
+	 */
+	public double getAUCPRError(double minRecall) {
+		// offset within a bin, well above Point.EPSILON
+		double offset = 0.25 * (max - min) / pos.length;
+		double est = areaPR(0.0, minRecall);
+		double best = areaPR(offset, minRecall);
+		double worst = areaPR(-offset, minRecall);
+		return Math.max(Math.abs(best - est), Math.abs(est - worst));
+	}
+
+	/**
+	 * Closed form AUC-PR of the examples of createExamples
+	 * @param offset how far above the negatives positives are placed
+	 * @param minRecall the lower bound cutoff for recall
+	 * @return the AUC-PR
+	 */
+	private double areaPR(double offset, double minRecall) {
+		return Confusion.createConfusion(createExamples(offset), false, true)
+			.areaPR(minRecall, true);
+	}
+
+	/**
+	 * Creates one positive and one negative example for each bin, at
+	 * the bin center plus and minus offset respectively
+	 * @param offset how far above the negatives positives are placed
+	 * @return examples, sorted
+	 */
+	private ExampleList createExamples(double offset) {
+		ExampleList list = new ExampleList(2 * pos.length);
+		double width = (max - min) / pos.length;
+		for (int i = 0; i < pos.length; i++) {
+			double center = min + (i + 0.5) * width;
+			if (neg[i] > 0) {
+				list.add(center - offset, 0, neg[i]);
+			}
+			if (pos[i] > 0) {
+				list.add(center + offset, 1, pos[i]);
+			}
+		}
+		list.sort();
+		return list;
+	}
+}
@@ -0,0 +1,236 @@
+package auc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+/**
+ * ScoreTable holds the scores of several models for the same examples,
+ * read from a multi-score list file with one example per line:
+ * outcome score1 score2 ... scoreK
+ * The outcome is 0/1 or false/true as in list files.  A first line
+ * whose outcome is not recognized is taken as a header naming the
+ * models.  Scores are kept in one primitive column per model, so the
+ * file is parsed once however many models it holds.
+ */
+public class ScoreTable {
+	/**
+	 * Name of each model
+	 */
+	private String[] names = null;
+
+	/**
+	 * Classification of each example, 1 for positive and 0 for negative
+	 */
+	private byte[] classes = new byte[16];
+
+	/**
+	 * Scores of each model, indexed by model and then example
+	 */
+	private double[][] scores = null;
+
+	/**
+	 * Number of examples stored
+	 */
+	private int size = 0;
+
+	/**
+	 * Read in a multi-score list file
+	 * @param fileName file to read, which may be compressed or
+	 *        ReadList.STDIN
+	 * @return table of the scores in the file
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the header line names no
+	 *         models
+	 */
+	public static ScoreTable read(String fileName) throws IOException {
+		ScoreTable table = new ScoreTable();
+		InputStream fin = ReadList.open(fileName);
+		try {
+			table.new Parser().parse(fin, null);
+		} finally {
+			fin.close();
+		}
+		if (table.names == null) {
+			table.names = new String[0];
+		}
+		if (table.scores == null) {
+			// no examples, possibly after a header
+			table.scores = new double[table.names.length][0];
+		}
+		return table;
+	}
+
+	/**
+	 * Number of models, the number of scores on each line
+	 * @return number of models
+	 */
+	public int getModels() {
+		return names.length;
+	}
+
+	/**
+	 * Name of a model, from the header line or its column number
+	 * starting at 1
+	 * @param k index of the model
+	 * @return name of the model
+	 */
+	public String getName(int k) {
+		return names[k];
+	}
+
+	/**
+	 * Name of a model that is safe to use in a file name, its name if
+	 * that only has letters, digits and . _ + - characters, otherwise
+	 * its column number starting at 1
+	 * @param k index of the model
+	 * @return name for files of the model
+	 */
+	public String getFileName(int k) {
+		if (names[k].matches("[A-Za-z0-9._+-]+") && !names[k].matches("\\.+")) {
+			return names[k];
+		}
+		return Integer.toString(k+1);
+	}
+
+	/**
+	 * Number of examples
+	 * @return number of examples
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates the examples of one model, each with weight 1.0
+	 * @param k index of the model
+	 * @return examples in file order
+	 */
+	public ExampleList getModel(int k) {
+		ExampleList list = new ExampleList(size);
+		double[] column = scores[k];
+		for (int i = 0; i < size; i++) {
+			list.add(column[i], classes[i], 1.0);
+		}
+		return list;
+	}
+
+	/**
+	 * Adds an example
+	 * @param outcome 1 for positive, 0 for negative
+	 * @param values score of each model
+	 * @param k number of scores
+	 */
+	private void add(int outcome, double[] values, int k) {
+		if (size == classes.length) {
+			int cap = size + (size >> 1) + 1;
+			classes = Arrays.copyOf(classes, cap);
+			for (int j = 0; j < k; j++) {
+				scores[j] = Arrays.copyOf(scores[j], cap);
+			}
+		}
+		classes[size] = (byte)outcome;
+		for (int j = 0; j < k; j++) {
+			scores[j][size] = values[j];
+		}
+		size++;
+	}
+
+	/**
+	 * Parses lines of a multi-score list file into the table, reusing
+	 * the tokenizing and number parsing of list files
+	 */
+	private class Parser extends ListParser {
+		/**
+		 * Scores of the current line
+		 */
+		private double[] values = new double[16];
+
+		/**
+		 * True until the first line has been seen
+		 */
+		private boolean first = true;
+
+		/**
+		 * Parses a single line of scores into the table
+		 * @param b bytes holding the line
+		 * @param start index of the first byte of the line
+		 * @param end index one past the last byte of the line
+		 * @param list not used, the table receives the scores
+		 * @return true if an example was added
+		 */
+		public boolean parseLine(byte[] b, int start, int end, ExampleSink list) {
+			int p = skipDelimiters(b, start, end);
+			if (p == end) {
+				Log.print("... skipping bad input line (no outcome token found");
+				return false;
+			}
+			int outEnd = tokenEnd(b, p, end);
+			int outcome = parseOutcome(b, p, outEnd);
+			if (outcome == -1) {
+				if (first) {
+					first = false;
+					readHeader(b, outEnd, end);
+					return false;
+				}
+				Log.print("... skipping bad input line (unknown outcome of '"
+						+ new String(b, p, outEnd - p, StandardCharsets.UTF_8) + "'");
+				return false;
+			}
+			first = false;
+
+			int k = 0;
+			p = skipDelimiters(b, outEnd, end);
+			while (p < end) {
+				int tokEnd = tokenEnd(b, p, end);
+				if (!parseDouble(b, p, tokEnd)) {
+					Log.print("... skipping bad input line (no parsable double score found");
+					return false;
+				}
+				if (k == values.length) {
+					values = Arrays.copyOf(values, 2 * k);
+				}
+				values[k++] = getValue();
+				p = skipDelimiters(b, tokEnd, end);
+			}
+
+			if (names == null && k > 0) {
+				// the first example decides the number of models
+				names = new String[k];
+				for (int j = 0; j < k; j++) {
+					names[j] = Integer.toString(j+1);
+				}
+			}
+			if (names == null || k != names.length || k == 0) {
+				Log.print("... skipping bad input line (expected "
+						+ (names == null ? 1 : names.length) + " scores but found " + k);
+				return false;
+			}
+			if (scores == null) {
+				scores = new double[k][classes.length];
+			}
+			add(outcome, values, k);
+			return true;
+		}
+
+		/**
+		 * Takes the model names from the tokens after the first one of
+		 * a header line
+		 * @throws IllegalArgumentException if the line names no models
+		 */
+		private void readHeader(byte[] b, int start, int end) {
+			ArrayList<String> header = new ArrayList<String>();
+			int p = skipDelimiters(b, start, end);
+			while (p < end) {
+				int tokEnd = tokenEnd(b, p, end);
+				header.add(new String(b, p, tokEnd - p, StandardCharsets.UTF_8));
+				p = skipDelimiters(b, tokEnd, end);
+			}
+			if (header.isEmpty()) {
+				throw new IllegalArgumentException("Header line names no models");
+			}
+			names = header.toArray(new String[header.size()]);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package auc;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Records the wall time, allocated bytes and item counts of the phases
+ * of a run, such as reading, sorting, interpolating, creating curves
+ * and writing files, so a slow run shows which phase to blame.  Each
+ * phase is bracketed as
+ * <pre>
+ * Stats.Phase phase = Stats.begin("sort");
+ * ...
+ * phase.end(points);
+ * </pre>
+ * and is also emitted as a PhaseEvent when a flight recording enables
+ * it.  With neither, begin returns a shared phase that does nothing.
+ * <p>
+ * On one thread the phases follow each other: readFile is the parsing
+ * alone (and spilling sorted runs under -memory), createConfusion the
+ * cumulative sweep, and sort and interpolate the arranging of the
+ * points.  Phases on different threads do overlap, such as the
+ * write*File phases of -o or the files of a multi-file run, so their
+ * times can add up to more than the wall time.
+ * <p>
+ * Allocation is counted on the thread that began the phase, plus
+ * what worker threads report through addWorkerBytes before the phase
+ * ends, as the parsing threads of readFile do.
+ */
+public class Stats {
+	/**
+	 * True to record phases for the summary
+	 */
+	private static volatile boolean enabled = false;
+
+	/**
+	 * Totals of each phase, in order of first use
+	 */
+	private static final LinkedHashMap<String, Totals> totals =
+		new LinkedHashMap<String, Totals>();
+
+	/**
+	 * Time recording was enabled
+	 */
+	private static long startNanos = 0;
+
+	/**
+	 * Phase returned when nothing is recorded
+	 */
+	private static final Phase NONE = new Phase(null, null);
+
+	/**
+	 * Innermost phase begun on each thread and not yet ended
+	 */
+	private static final ThreadLocal<Phase> current = new ThreadLocal<Phase>();
+
+	/**
+	 * Totals of all calls of one phase
+	 */
+	private static class Totals {
+		long calls = 0;
+		long nanos = 0;
+		long bytes = 0;
+		long items = 0;
+	}
+
+	/**
+	 * Turns recording of the summary on or off
+	 * @param on true to record phases
+	 */
+	public static void setEnabled(boolean on) {
+		if (on && !enabled) {
+			startNanos = System.nanoTime();
+		}
+		enabled = on;
+	}
+
+	/**
+	 * Checks if phases are recorded for the summary
+	 * @return true if recording
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Begins a phase on the current thread
+	 * @param name name of the phase
+	 * @return phase to end when it is done
+	 */
+	public static Phase begin(String name) {
+		PhaseEvent event = new PhaseEvent();
+		if (!event.isEnabled()) {
+			if (!enabled) {
+				return NONE;
+			}
+			event = null;
+		} else {
+			event.begin();
+		}
+		Phase phase = new Phase(name, event);
+		current.set(phase);
+		return phase;
+	}
+
+	/**
+	 * Innermost phase begun on the current thread, for worker threads
+	 * to report their allocation to
+	 * @return phase, or a phase that does nothing if there is none
+	 */
+	public static Phase current() {
+		Phase phase = current.get();
+		return phase == null ? NONE : phase;
+	}
+
+	/**
+	 * One call of a phase, in progress
+	 */
+	public static class Phase {
+		private final String name;
+		private final PhaseEvent event;
+		private final long bytes;
+		private final long nanos;
+
+		/**
+		 * Phase that was current when this one began
+		 */
+		private final Phase parent;
+
+		/**
+		 * Bytes allocated for this phase by worker threads
+		 */
+		private final AtomicLong workerBytes = new AtomicLong();
+
+		private Phase(String name, PhaseEvent event) {
+			this.name = name;
+			this.event = event;
+			this.bytes = name == null ? 0 : allocatedBytes();
+			this.nanos = name == null ? 0 : System.nanoTime();
+			this.parent = name == null ? null : current.get();
+		}
+
+		/**
+		 * Adds the bytes a worker thread allocated for this phase,
+		 * called on the worker thread when its work is done
+		 * @param since allocatedBytes() of the worker thread when it
+		 *        started the work
+		 */
+		public void addWorkerBytes(long since) {
+			if (name == null || since < 0) {
+				return;
+			}
+			workerBytes.addAndGet(allocatedBytes() - since);
+		}
+
+		/**
+		 * Ends the phase, adding it to the totals
+		 * @param items number of examples, points or lines handled
+		 */
+		public void end(long items) {
+			if (name == null) {
+				return;
+			}
+			current.set(parent);
+			long elapsed = System.nanoTime() - nanos;
+			long allocated = (bytes < 0 ? 0 : allocatedBytes() - bytes)
+				+ workerBytes.get();
+			if (event != null) {
+				event.end();
+				if (event.shouldCommit()) {
+					event.phase = name;
+					event.items = items;
+					event.allocated = allocated;
+					event.commit();
+				}
+			}
+			if (enabled) {
+				synchronized (totals) {
+					Totals t = totals.get(name);
+					if (t == null) {
+						t = new Totals();
+						totals.put(name, t);
+					}
+					t.calls++;
+					t.nanos += elapsed;
+					t.bytes += allocated;
+					t.items += items;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Bytes allocated so far by the current thread
+	 * @return bytes, or -1 if the JVM does not count them
+	 */
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Prints the totals of every phase recorded
+	 * @param out stream to print to
+	 * @param json true for a JSON object, false for a table
+	 */
+	public static void print(PrintStream out, boolean json) {
+		double wall = (System.nanoTime() - startNanos) / 1e6;
+		synchronized (totals) {
+			if (json) {
+				StringBuilder sb = new StringBuilder();
+				sb.append("{\"wallMillis\":").append(wall).append(",\"phases\":[");
+				boolean first = true;
+				for (Map.Entry<String, Totals> e : totals.entrySet()) {
+					Totals t = e.getValue();
+					sb.append(first ? "" : ",");
+					sb.append("{\"phase\":\"").append(e.getKey())
+						.append("\",\"calls\":").append(t.calls)
+						.append(",\"millis\":").append(t.nanos / 1e6)
+						.append(",\"allocatedBytes\":").append(t.bytes)
+						.append(",\"items\":").append(t.items).append("}");
+					first = false;
+				}
+				sb.append("]}");
+				out.println(sb);
+			} else {
+				out.println(String.format("%-22s %8s %12s %14s %14s",
+						"Phase", "Calls", "Millis", "Allocated MB", "Items"));
+				for (Map.Entry<String, Totals> e : totals.entrySet()) {
+					Totals t = e.getValue();
+					out.println(String.format("%-22s %8d %12.3f %14.3f %14d",
+							e.getKey(), t.calls, t.nanos / 1e6,
+							t.bytes / (double)(1 << 20), t.items));
+				}
+				out.println(String.format("%-22s %8s %12.3f", "Wall", "", wall));
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package auc;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Building, sorting and interpolating the points of a Confusion and
+ * integrating its curves.  Operations that change their input get a
+ * fresh copy before every invocation, outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ConfusionBenchmark {
+	/**
+	 * Examples in file order, and sorted
+	 */
+	private ExampleList examples;
+	private ExampleList sortedExamples;
+
+	/**
+	 * Points at each threshold, before and after interpolation
+	 */
+	private Confusion thresholds;
+	private Confusion interpolated;
+
+	@Setup(Level.Trial)
+	public void createPoints(Dataset data) {
+		examples = data.create(0);
+		sortedExamples = data.create(0);
+		sortedExamples.sort();
+		thresholds = Confusion.createConfusion(data.create(0), false, true);
+		interpolated = Confusion.createConfusion(data.create(0), true, true);
+	}
+
+	/**
+	 * Inputs of the operations that change them, copied before each
+	 * invocation
+	 */
+	@State(Scope.Thread)
+	public static class Fresh {
+		ExampleList unsorted;
+		Confusion shuffled;
+		Confusion sorted;
+
+		@Setup(Level.Invocation)
+		public void copy(ConfusionBenchmark b) {
+			unsorted = new ExampleList(b.examples.size());
+			unsorted.addAll(b.examples);
+			shuffled = shuffle(b.thresholds);
+			sorted = ConfusionBenchmark.copy(b.thresholds);
+		}
+	}
+
+	@Benchmark
+	public Confusion createConfusion(Fresh in) {
+		return Confusion.createConfusion(in.unsorted, true);
+	}
+
+	@Benchmark
+	public Confusion sort(Fresh in) {
+		in.shuffled.sort();
+		return in.shuffled;
+	}
+
+	@Benchmark
+	public Confusion interpolate(Fresh in) {
+		in.sorted.interpolate();
+		return in.sorted;
+	}
+
+	@Benchmark
+	public double calculateAUCPR() {
+		return interpolated.calculateAUCPR(0.0);
+	}
+
+	@Benchmark
+	public double calculateAUCPRClosedForm() {
+		return thresholds.calculateAUCPRClosedForm(0.0);
+	}
+
+	/**
+	 * AUC-ROC of the Confusion, as the command line program
+	 * calculates it
+	 */
+	@Benchmark
+	public double calculateAUCROC() {
+		return interpolated.calculateAUCROC();
+	}
+
+	/**
+	 * AUC-ROC of a sorted list as a rank statistic, as bootstrap
+	 * resamples calculate it
+	 */
+	@Benchmark
+	public double calculateAUCROCList() {
+		return Confusion.calculateAUCROC(sortedExamples);
+	}
+
+	/**
+	 * Copies the points of a Confusion
+	 */
+	static Confusion copy(Confusion points) {
+		Confusion c = new Confusion(points.getTotPos(), points.getTotNeg());
+		for (int i = 0; i < points.size(); i++) {
+			c.addPoint(points.getPos(i), points.getNeg(i));
+		}
+		return c;
+	}
+
+	/**
+	 * Copies the points of a Confusion in random order
+	 */
+	static Confusion shuffle(Confusion points) {
+		int[] order = new int[points.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Random rand = new Random(order.length);
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		Confusion c = new Confusion(points.getTotPos(), points.getTotNeg());
+		for (int i = 0; i < order.length; i++) {
+			c.addPoint(points.getPos(order[i]), points.getNeg(order[i]));
+		}
+		return c;
+	}
+}
@@ -0,0 +1,60 @@
+package auc;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Looking up and vertically averaging PR curves
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CurveBenchmark {
+	/**
+	 * Number of lookups in one getY operation
+	 */
+	private static final int LOOKUPS = 1 << 12;
+
+	/**
+	 * Number of curves averaged
+	 */
+	private static final int CURVES = 10;
+
+	/**
+	 * Number of samples of the averaged curves
+	 */
+	private static final int SAMPLES = 1000;
+
+	private final ArrayList<Curve> curves = new ArrayList<Curve>();
+
+	@Setup(Level.Trial)
+	public void createCurves(Dataset data) {
+		for (int c = 0; c < CURVES; c++) {
+			Curve curve = Confusion.createConfusion(data.create(c), true, true)
+				.createPRCurve();
+			// sort once, outside the measured lookups
+			curve.size();
+			curves.add(curve);
+		}
+	}
+
+	/**
+	 * Time per lookup of LOOKUPS evenly spread recalls
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void getY(Blackhole bh) {
+		Curve curve = curves.get(0);
+		for (int i = 0; i < LOOKUPS; i++) {
+			bh.consume(curve.getY((i + 0.5) / LOOKUPS));
+		}
+	}
+
+	@Benchmark
+	public Curve createVerticalAverage() {
+		return Curve.createVerticalAverage(curves, SAMPLES);
+	}
+}
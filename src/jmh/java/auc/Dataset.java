@@ -0,0 +1,85 @@
+package auc;
+
+import java.io.*;
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Synthetic dataset shared by the benchmarks.  Each size is run with
+ * distinct and tied scores and with unit and fractional weights.
+ * Positives score higher on average so the curves are not trivial.
+ * Sizes from 10^3 to 10^8 rows can be given with gradle jmh -Prows=...
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+	/**
+	 * Number of distinct scores with tied scores
+	 */
+	static final int TIE_LEVELS = 100;
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int rows;
+
+	@Param({"distinct", "tied"})
+	public String scores;
+
+	@Param({"unit", "fractional"})
+	public String weights;
+
+	/**
+	 * Silences the progress the library prints while it works
+	 */
+	@Setup(Level.Trial)
+	public void quiet() {
+		Log.setLevel(Log.OFF);
+	}
+
+	/**
+	 * Generates the examples, in random order
+	 * @param shift added to the seed for a different sample of the
+	 *        same distribution
+	 * @return new examples
+	 */
+	ExampleList create(int shift) {
+		boolean ties = scores.equals("tied");
+		boolean weighted = weights.equals("fractional");
+		Random rand = new Random(31L * rows + (ties ? 1 : 0) + (weighted ? 2 : 0) + shift);
+		ExampleList list = new ExampleList(rows);
+		for (int i = 0; i < rows; i++) {
+			int classification = rand.nextInt(4) == 0 ? 1 : 0;
+			double prob = rand.nextDouble();
+			prob = classification == 1 ? Math.sqrt(prob) : prob * prob;
+			if (ties) {
+				prob = Math.floor(prob * TIE_LEVELS) / TIE_LEVELS;
+			}
+			double weight = weighted ? 0.25 + 1.5 * rand.nextDouble() : 1.0;
+			list.add(prob, classification, weight);
+		}
+		return list;
+	}
+
+	/**
+	 * Writes the examples as a list file
+	 * @param file file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	void write(File file) throws IOException {
+		ExampleList list = create(0);
+		PrintWriter pw = new PrintWriter(new BufferedWriter(
+				new FileWriter(file), 1 << 16));
+		try {
+			for (int i = 0; i < list.size(); i++) {
+				pw.print(list.getProb(i));
+				pw.print(' ');
+				pw.print(list.getClassification(i));
+				pw.print(' ');
+				pw.print(list.getWeight(i));
+				pw.print('\n');
+			}
+		} finally {
+			pw.close();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package auc;
+
+import java.io.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Reading, sorting and sweeping a list file, as a run of the command
+ * line program does before calculating the areas
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ReadListBenchmark {
+	private File file;
+
+	@Setup(Level.Trial)
+	public void writeFile(Dataset data) throws IOException {
+		file = File.createTempFile("auc-bench", ".list");
+		file.deleteOnExit();
+		data.write(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Benchmark
+	public Confusion readFile() {
+		return ReadList.readFile(file.getPath(), "list", true);
+	}
+}